@@ -0,0 +1,27 @@
+(defproject com.github.igrishaev/pg-bench "0.1.11-SNAPSHOT"
+
+  :description
+  "JMH benchmarks for pg-client2: codecs, framing, reducers,
+  and queries against a fake in-process backend"
+
+  :plugins
+  [[lein-parent "0.3.8"]]
+
+  :dependencies
+  [[org.clojure/clojure]
+   [com.github.igrishaev/pg-client2 "0.1.11-SNAPSHOT"]
+   [org.postgresql/postgresql]
+   [org.openjdk.jmh/jmh-core "1.37"]
+   [org.openjdk.jmh/jmh-generator-annprocess "1.37"]]
+
+  :java-source-paths ["src"]
+
+  :main org.openjdk.jmh.Main
+
+  :parent-project
+  {:path "../project.clj"
+   :inherit [:license
+             :managed-dependencies
+             :plugins
+             :repositories
+             :url]})
@@ -0,0 +1,143 @@
+package com.github.igrishaev.bench;
+
+import com.github.igrishaev.codec.DecoderBin;
+import com.github.igrishaev.codec.DecoderTxt;
+import com.github.igrishaev.codec.EncoderBin;
+import com.github.igrishaev.codec.EncoderTxt;
+import com.github.igrishaev.enums.OID;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Encoding and decoding of single values, text and binary.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBench {
+
+    private static final UUID UUID_VALUE = UUID.fromString("4f2e8a3c-7d0b-4e4a-9d1c-2b6f3a5e8c71");
+
+    private final DecoderTxt decoderTxt = new DecoderTxt();
+    private final DecoderBin decoderBin = new DecoderBin();
+    private final EncoderTxt encoderTxt = new EncoderTxt();
+    private final EncoderBin encoderBin = new EncoderBin();
+
+    private ByteBuffer txtInt8;
+    private ByteBuffer txtFloat8;
+    private ByteBuffer txtText;
+    private ByteBuffer txtUuid;
+    private ByteBuffer txtJson;
+    private ByteBuffer binInt8;
+    private ByteBuffer binFloat8;
+    private ByteBuffer binText;
+    private ByteBuffer binUuid;
+
+    private static ByteBuffer txt(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Setup
+    public void setup() {
+        txtInt8 = txt("1234567890123");
+        txtFloat8 = txt("12345.6789");
+        txtText = txt("The quick brown fox jumps over the lazy dog");
+        txtUuid = txt(UUID_VALUE.toString());
+        txtJson = txt("{\"id\": 42, \"tags\": [\"a\", \"b\"], \"active\": true}");
+        binInt8 = encoderBin.encode(1234567890123L, OID.INT8);
+        binFloat8 = encoderBin.encode(12345.6789, OID.FLOAT8);
+        binText = encoderBin.encode("The quick brown fox jumps over the lazy dog", OID.TEXT);
+        binUuid = encoderBin.encode(UUID_VALUE, OID.UUID);
+    }
+
+    private static ByteBuffer rewind(ByteBuffer buf) {
+        return buf.rewind();
+    }
+
+    @Benchmark
+    public Object decodeTxtInt8() {
+        return decoderTxt.decode(rewind(txtInt8), OID.INT8);
+    }
+
+    @Benchmark
+    public Object decodeTxtFloat8() {
+        return decoderTxt.decode(rewind(txtFloat8), OID.FLOAT8);
+    }
+
+    @Benchmark
+    public Object decodeTxtText() {
+        return decoderTxt.decode(rewind(txtText), OID.TEXT);
+    }
+
+    @Benchmark
+    public Object decodeTxtUuid() {
+        return decoderTxt.decode(rewind(txtUuid), OID.UUID);
+    }
+
+    @Benchmark
+    public Object decodeTxtJson() {
+        return decoderTxt.decode(rewind(txtJson), OID.JSONB);
+    }
+
+    @Benchmark
+    public Object decodeBinInt8() {
+        return decoderBin.decode(rewind(binInt8), OID.INT8);
+    }
+
+    @Benchmark
+    public Object decodeBinFloat8() {
+        return decoderBin.decode(rewind(binFloat8), OID.FLOAT8);
+    }
+
+    @Benchmark
+    public Object decodeBinText() {
+        return decoderBin.decode(rewind(binText), OID.TEXT);
+    }
+
+    @Benchmark
+    public Object decodeBinUuid() {
+        return decoderBin.decode(rewind(binUuid), OID.UUID);
+    }
+
+    @Benchmark
+    public Object encodeTxtInt8() {
+        return encoderTxt.encode(1234567890123L, OID.INT8);
+    }
+
+    @Benchmark
+    public Object encodeTxtFloat8() {
+        return encoderTxt.encode(12345.6789, OID.FLOAT8);
+    }
+
+    @Benchmark
+    public Object encodeTxtUuid() {
+        return encoderTxt.encode(UUID_VALUE, OID.UUID);
+    }
+
+    @Benchmark
+    public Object encodeBinInt8() {
+        return encoderBin.encode(1234567890123L, OID.INT8);
+    }
+
+    @Benchmark
+    public Object encodeBinFloat8() {
+        return encoderBin.encode(12345.6789, OID.FLOAT8);
+    }
+
+    @Benchmark
+    public Object encodeBinText() {
+        return encoderBin.encode("The quick brown fox jumps over the lazy dog", OID.TEXT);
+    }
+
+    @Benchmark
+    public Object encodeBinUuid() {
+        return encoderBin.encode(UUID_VALUE, OID.UUID);
+    }
+}
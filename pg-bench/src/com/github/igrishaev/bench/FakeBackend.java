@@ -0,0 +1,232 @@
+package com.github.igrishaev.bench;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/*
+ * An in-process server that speaks just enough of the
+ * protocol to benchmark a client without a real Postgres:
+ * trust authentication, the simple query, and the extended
+ * protocol with no parameters. Each query is answered with
+ * the Recording the script returns for its text; unknown
+ * queries (the script returns null) complete with no rows.
+ * Every connection is served by its own thread.
+ */
+public class FakeBackend implements AutoCloseable {
+
+    private static final int SSL_REQUEST = 80877103;
+    private static final int GSS_REQUEST = 80877104;
+    private static final int CANCEL_REQUEST = 80877102;
+
+    private final ServerSocket serverSocket;
+    private final Function<String, Recording> script;
+    private final Thread acceptor;
+
+    public FakeBackend(Function<String, Recording> script) {
+        this.script = script;
+        try {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        acceptor = new Thread(this::acceptLoop, "fake-backend");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public void close() {
+        try {
+            serverSocket.close();
+        }
+        catch (IOException ignored) {
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            }
+            catch (IOException e) {
+                return;
+            }
+            Thread thread = new Thread(() -> serve(socket), "fake-backend-conn");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private Recording lookup(String sql) {
+        Recording recording = script.apply(sql);
+        if (recording == null) {
+            String[] words = sql.trim().split("\\s+", 2);
+            recording = Recording.command(words[0].toUpperCase());
+        }
+        return recording;
+    }
+
+    private static String readCString(byte[] body, int[] offset) {
+        int start = offset[0];
+        int end = start;
+        while (body[end] != 0) {
+            end++;
+        }
+        offset[0] = end + 1;
+        return new String(body, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static void writeMessage(DataOutputStream out, char tag, byte[] body) throws IOException {
+        out.writeByte(tag);
+        out.writeInt(body.length + 4);
+        out.write(body);
+    }
+
+    private static void writeParameterStatus(DataOutputStream out, String name, String value) throws IOException {
+        byte[] n = name.getBytes(StandardCharsets.UTF_8);
+        byte[] v = value.getBytes(StandardCharsets.UTF_8);
+        out.writeByte('S');
+        out.writeInt(4 + n.length + 1 + v.length + 1);
+        out.write(n);
+        out.writeByte(0);
+        out.write(v);
+        out.writeByte(0);
+    }
+
+    private static void writeReadyForQuery(DataOutputStream out) throws IOException {
+        writeMessage(out, 'Z', new byte[] {'I'});
+    }
+
+    private static void writeHandshake(DataOutputStream out) throws IOException {
+        // AuthenticationOk
+        out.writeByte('R');
+        out.writeInt(8);
+        out.writeInt(0);
+        writeParameterStatus(out, "server_version", "16.0");
+        writeParameterStatus(out, "server_encoding", "UTF8");
+        writeParameterStatus(out, "client_encoding", "UTF8");
+        writeParameterStatus(out, "DateStyle", "ISO, MDY");
+        writeParameterStatus(out, "TimeZone", "UTC");
+        writeParameterStatus(out, "integer_datetimes", "on");
+        writeParameterStatus(out, "standard_conforming_strings", "on");
+        // BackendKeyData
+        out.writeByte('K');
+        out.writeInt(12);
+        out.writeInt(1);
+        out.writeInt(42);
+        writeReadyForQuery(out);
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 0xFFFF));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 0xFFFF));
+
+            while (true) {
+                int len = in.readInt();
+                int code = in.readInt();
+                in.skipNBytes(len - 8);
+                if (code == SSL_REQUEST || code == GSS_REQUEST) {
+                    out.writeByte('N');
+                    out.flush();
+                }
+                else if (code == CANCEL_REQUEST) {
+                    return;
+                }
+                else {
+                    break;
+                }
+            }
+
+            writeHandshake(out);
+            out.flush();
+
+            Map<String, String> statements = new HashMap<>();
+            Map<String, String> portals = new HashMap<>();
+
+            while (true) {
+                int tag = in.read();
+                if (tag == -1) {
+                    return;
+                }
+                byte[] body = in.readNBytes(in.readInt() - 4);
+                int[] offset = {0};
+                switch (tag) {
+                    case 'Q' -> {
+                        Recording recording = lookup(readCString(body, offset));
+                        out.write(recording.toByteArray());
+                        writeReadyForQuery(out);
+                        out.flush();
+                    }
+                    case 'P' -> {
+                        String statement = readCString(body, offset);
+                        statements.put(statement, readCString(body, offset));
+                        writeMessage(out, '1', new byte[0]);
+                    }
+                    case 'B' -> {
+                        String portal = readCString(body, offset);
+                        portals.put(portal, statements.get(readCString(body, offset)));
+                        writeMessage(out, '2', new byte[0]);
+                    }
+                    case 'D' -> {
+                        offset[0] = 1;
+                        String name = readCString(body, offset);
+                        boolean isStatement = body[0] == 'S';
+                        Recording recording = lookup(isStatement ? statements.get(name) : portals.get(name));
+                        if (isStatement) {
+                            // no parameters
+                            writeMessage(out, 't', new byte[] {0, 0});
+                        }
+                        if (recording.rowDescription().length == 0) {
+                            writeMessage(out, 'n', new byte[0]);
+                        }
+                        else {
+                            out.write(recording.rowDescription());
+                        }
+                    }
+                    case 'E' -> {
+                        Recording recording = lookup(portals.get(readCString(body, offset)));
+                        out.write(recording.dataRows());
+                        out.write(recording.commandComplete());
+                    }
+                    case 'C' -> writeMessage(out, '3', new byte[0]);
+                    case 'S' -> {
+                        writeReadyForQuery(out);
+                        out.flush();
+                    }
+                    case 'H' -> out.flush();
+                    case 'X' -> {
+                        return;
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+        catch (EOFException ignored) {
+        }
+        catch (IOException e) {
+            if (!serverSocket.isClosed()) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.github.igrishaev.bench;
+
+import com.github.igrishaev.MessageReader;
+import com.github.igrishaev.MessageWriter;
+import com.github.igrishaev.codec.EncoderBin;
+import com.github.igrishaev.codec.EncoderTxt;
+import com.github.igrishaev.codec.IEncoder;
+import com.github.igrishaev.enums.Format;
+import com.github.igrishaev.enums.OID;
+import com.github.igrishaev.msg.Bind;
+import com.github.igrishaev.msg.DataRow;
+import com.github.igrishaev.msg.Execute;
+import com.github.igrishaev.msg.Parse;
+import com.github.igrishaev.msg.Query;
+import com.github.igrishaev.msg.Sync;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Framing: encoding frontend messages into the MessageWriter,
+ * splitting the input into frames, and parsing DataRow.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBench {
+
+    // Drops everything written.
+    private static class NullChannel implements GatheringByteChannel {
+
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                total += srcs[i].remaining();
+                srcs[i].position(srcs[i].limit());
+            }
+            return total;
+        }
+
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        public int write(ByteBuffer src) {
+            return (int) write(new ByteBuffer[] {src});
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void close() {
+        }
+    }
+
+    // Replays the same bytes over and over.
+    private static class LoopStream extends InputStream {
+
+        private final byte[] bytes;
+        private int pos;
+
+        LoopStream(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        public int read() {
+            byte b = bytes[pos];
+            pos = (pos + 1) % bytes.length;
+            return b & 0xFF;
+        }
+
+        public int read(byte[] dst, int off, int len) {
+            int n = Math.min(len, bytes.length - pos);
+            System.arraycopy(bytes, pos, dst, off, n);
+            pos = (pos + n) % bytes.length;
+            return n;
+        }
+    }
+
+    private static final String QUERY =
+            "select id, name, email, created_at from users where id = $1 and status = $2";
+
+    private MessageWriter writer;
+    private MessageReader reader;
+    private Parse parse;
+    private Bind bind;
+    private Bind bindBin;
+    private Execute execute;
+    private ByteBuffer dataRowBody;
+
+    @Setup
+    public void setup() {
+        writer = new MessageWriter(new NullChannel(), 0xFFFF);
+
+        IEncoder[] encoders = new IEncoder[10];
+        Arrays.fill(encoders, new EncoderTxt().encoder(OID.TEXT));
+        Object[] values = new Object[10];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = "value number " + i;
+        }
+        parse = new Parse("s1", QUERY, List.of(OID.INT8, OID.TEXT));
+        bind = new Bind("", "s1", List.of(values), encoders,
+                new Format[] {Format.TXT}, new Format[] {Format.TXT});
+
+        // A typical insert: int8 ids and texts, in binary.
+        EncoderBin encoderBin = new EncoderBin();
+        IEncoder[] encodersBin = new IEncoder[10];
+        Object[] valuesBin = new Object[10];
+        for (int i = 0; i < valuesBin.length; i++) {
+            boolean isText = i % 2 == 1;
+            encodersBin[i] = encoderBin.encoder(isText ? OID.TEXT : OID.INT8);
+            valuesBin[i] = isText ? "value number " + i : (Object) (long) i;
+        }
+        bindBin = new Bind("", "s1", List.of(valuesBin), encodersBin,
+                new Format[] {Format.BIN}, new Format[] {Format.BIN});
+        execute = new Execute("", 0);
+
+        String[] names = new String[10];
+        String[] row = new String[10];
+        for (int i = 0; i < row.length; i++) {
+            names[i] = "column_" + i;
+            row[i] = "column value " + i;
+        }
+        String[][] rows = new String[100][];
+        Arrays.fill(rows, row);
+        OID[] rowOids = new OID[10];
+        Arrays.fill(rowOids, OID.TEXT);
+        Recording recording = Recording.ofRows(names, rowOids, rows);
+        byte[] dataRows = recording.dataRows();
+        reader = new MessageReader(new LoopStream(dataRows), 0xFFFF);
+
+        int bodyLen = ByteBuffer.wrap(dataRows).getInt(1) - 4;
+        dataRowBody = ByteBuffer.wrap(dataRows, 5, bodyLen).slice();
+    }
+
+    @Benchmark
+    public void writeQuery() {
+        new Query(QUERY).encode(writer);
+        writer.flush();
+    }
+
+    @Benchmark
+    public void writeParseBindExecute() {
+        parse.encode(writer);
+        bind.encode(writer);
+        execute.encode(writer);
+        new Sync().encode(writer);
+        writer.flush();
+    }
+
+    @Benchmark
+    public void writeBindBinary() {
+        for (int i = 0; i < 100; i++) {
+            bindBin.encode(writer);
+        }
+        writer.flush();
+    }
+
+    @Benchmark
+    public Object readFrame() {
+        return reader.readFrame();
+    }
+
+    @Benchmark
+    public Object parseDataRow() {
+        return DataRow.fromByteBuffer(dataRowBody.rewind());
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.igrishaev.bench;
+
+import com.github.igrishaev.Config;
+import com.github.igrishaev.Connection;
+import com.github.igrishaev.enums.OID;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * End-to-end: pg-client2 and pgjdbc run the same query
+ * against FakeBackend, which replays a recorded response,
+ * so only the client side is measured. pgjdbc builds a map
+ * per row to match what pg-client2 returns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBench {
+
+    private static final String QUERY = "select * from bench";
+
+    @Param({"1000"})
+    public int rowCount;
+
+    private FakeBackend backend;
+    private Connection conn;
+    private java.sql.Connection jdbcSimple;
+    private java.sql.Connection jdbcExtended;
+    private PreparedStatement jdbcStatement;
+
+    private static Recording makeRecording(int rowCount) {
+        String[] names = {"id", "name", "email", "score", "active", "uid"};
+        OID[] oids = {OID.INT8, OID.TEXT, OID.TEXT, OID.FLOAT8, OID.BOOL, OID.UUID};
+        String[][] rows = new String[rowCount][];
+        for (int i = 0; i < rowCount; i++) {
+            rows[i] = new String[] {
+                    String.valueOf(i),
+                    "User " + i,
+                    i % 5 == 0 ? null : "user" + i + "@example.com",
+                    String.valueOf(i * 1.5),
+                    i % 2 == 0 ? "t" : "f",
+                    String.format("00000000-0000-4000-8000-%012d", i)
+            };
+        }
+        return Recording.ofRows(names, oids, rows);
+    }
+
+    @Setup
+    public void setup() throws SQLException {
+        Recording recording = makeRecording(rowCount);
+        backend = new FakeBackend(sql -> sql.equals(QUERY) ? recording : null);
+        int port = backend.getPort();
+
+        conn = new Connection(
+                new Config.Builder("test", "test")
+                        .host("127.0.0.1")
+                        .port(port)
+                        .build()
+        );
+
+        String url = String.format("jdbc:postgresql://127.0.0.1:%s/test?user=test&binaryTransfer=false", port);
+        jdbcSimple = DriverManager.getConnection(url + "&preferQueryMode=simple");
+        jdbcExtended = DriverManager.getConnection(url);
+        jdbcStatement = jdbcExtended.prepareStatement(QUERY);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        conn.close();
+        jdbcSimple.close();
+        jdbcExtended.close();
+        backend.close();
+    }
+
+    private static List<Map<String, Object>> readRows(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int count = meta.getColumnCount();
+        String[] labels = new String[count];
+        for (int i = 0; i < count; i++) {
+            labels[i] = meta.getColumnLabel(i + 1);
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        while (rs.next()) {
+            Map<String, Object> row = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                row.put(labels[i], rs.getObject(i + 1));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Benchmark
+    public Object pgClientQuery() {
+        return conn.query(QUERY);
+    }
+
+    @Benchmark
+    public Object pgClientExecute() {
+        return conn.execute(QUERY);
+    }
+
+    @Benchmark
+    public Object jdbcQuery() throws SQLException {
+        try (Statement stmt = jdbcSimple.createStatement();
+             ResultSet rs = stmt.executeQuery(QUERY)) {
+            return readRows(rs);
+        }
+    }
+
+    @Benchmark
+    public Object jdbcExecute() throws SQLException {
+        try (ResultSet rs = jdbcStatement.executeQuery()) {
+            return readRows(rs);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.igrishaev.bench;
+
+import com.github.igrishaev.enums.OID;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * The backend's response to a single query, as raw bytes
+ * in the wire format: RowDescription (may be empty), the
+ * DataRow messages, and CommandComplete. Either parsed out
+ * of a dump of backend messages or encoded from text rows.
+ */
+public record Recording (byte[] rowDescription,
+                         byte[] dataRows,
+                         byte[] commandComplete) {
+
+    private static class Out {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        ByteArrayOutputStream body;
+        DataOutputStream bodyOut;
+
+        DataOutputStream begin(char tag) {
+            bytes.write(tag);
+            body = new ByteArrayOutputStream();
+            bodyOut = new DataOutputStream(body);
+            return bodyOut;
+        }
+
+        void end() {
+            try {
+                out.writeInt(body.size() + 4);
+                body.writeTo(out);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    private static void writeCString(DataOutputStream out, String s) throws IOException {
+        out.write(s.getBytes(StandardCharsets.UTF_8));
+        out.write(0);
+    }
+
+    public static Recording command(String tag) {
+        try {
+            Out out = new Out();
+            writeCString(out.begin('C'), tag);
+            out.end();
+            return new Recording(new byte[0], new byte[0], out.toByteArray());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Text-encoded rows; a null stands for NULL.
+    public static Recording ofRows(String[] names, OID[] oids, String[][] rows) {
+        try {
+            Out desc = new Out();
+            DataOutputStream d = desc.begin('T');
+            d.writeShort(names.length);
+            for (int i = 0; i < names.length; i++) {
+                writeCString(d, names[i]);
+                d.writeInt(0);
+                d.writeShort(0);
+                d.writeInt(oids[i].toInt());
+                d.writeShort(-1);
+                d.writeInt(-1);
+                d.writeShort(0);
+            }
+            desc.end();
+
+            Out data = new Out();
+            for (String[] row: rows) {
+                DataOutputStream r = data.begin('D');
+                r.writeShort(row.length);
+                for (String value: row) {
+                    if (value == null) {
+                        r.writeInt(-1);
+                    }
+                    else {
+                        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                        r.writeInt(bytes.length);
+                        r.write(bytes);
+                    }
+                }
+                data.end();
+            }
+
+            Out done = new Out();
+            writeCString(done.begin('C'), "SELECT " + rows.length);
+            done.end();
+
+            return new Recording(desc.toByteArray(), data.toByteArray(), done.toByteArray());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Splits a dump of backend messages, e.g. taken from
+    // a proxy, into parts. Messages other than T, D and C
+    // are skipped.
+    public static Recording parse(byte[] dump) {
+        ByteBuffer buf = ByteBuffer.wrap(dump);
+        ByteArrayOutputStream desc = new ByteArrayOutputStream();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        ByteArrayOutputStream done = new ByteArrayOutputStream();
+        while (buf.hasRemaining()) {
+            int start = buf.position();
+            char tag = (char) buf.get();
+            int len = buf.getInt();
+            buf.position(start + 1 + len);
+            ByteArrayOutputStream target = switch (tag) {
+                case 'T' -> desc;
+                case 'D' -> data;
+                case 'C' -> done;
+                default -> null;
+            };
+            if (target != null) {
+                target.write(dump, start, len + 1);
+            }
+        }
+        return new Recording(desc.toByteArray(), data.toByteArray(), done.toByteArray());
+    }
+
+    public byte[] toByteArray() {
+        ByteBuffer buf = ByteBuffer.allocate(
+                rowDescription.length + dataRows.length + commandComplete.length
+        );
+        return buf.put(rowDescription).put(dataRows).put(commandComplete).array();
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.igrishaev.bench;
+
+import clojure.lang.AFn;
+import clojure.lang.Keyword;
+import com.github.igrishaev.codec.DecoderBin;
+import com.github.igrishaev.codec.DecoderTxt;
+import com.github.igrishaev.codec.IDecoder;
+import com.github.igrishaev.codec.TypeRegistry;
+import com.github.igrishaev.enums.Format;
+import com.github.igrishaev.enums.OID;
+import com.github.igrishaev.msg.DataRow;
+import com.github.igrishaev.msg.RowDescription;
+import com.github.igrishaev.reducer.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Folding a result of already decoded values with every
+ * reducer, the way Connection does: compose each row, append
+ * it, and finalize. The columnar reducer gets raw DataRows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReducerBench {
+
+    @Param({"default", "matrix", "dummy", "fold", "group-by", "index-by", "kv", "run", "stream", "columnar"})
+    public String reducerName;
+
+    @Param({"1000"})
+    public int rowCount;
+
+    private static final Keyword KW_ID = Keyword.intern("id");
+    private static final Keyword KW_NAME = Keyword.intern("name");
+
+    private IReducer reducer;
+    private Object[] keys;
+    private Object[][] rows;
+    private RowDescription rowDescription;
+    private IDecoder[] decoders;
+    private DataRow[] dataRows;
+
+    private static IReducer makeReducer(String name, Blackhole blackhole) {
+        return switch (name) {
+            case "default" -> new Default();
+            case "matrix" -> new Matrix();
+            case "dummy" -> new Dummy();
+            case "fold" -> new Fold(new AFn() {
+                public Object invoke(Object acc, Object row) {
+                    return (Long) acc + 1;
+                }
+            }, 0L);
+            case "group-by" -> new GroupBy(KW_NAME);
+            case "index-by" -> new IndexBy(KW_ID);
+            case "kv" -> new KV(KW_ID, KW_NAME);
+            case "run" -> new Run(new AFn() {
+                public Object invoke(Object row) {
+                    blackhole.consume(row);
+                    return null;
+                }
+            });
+            case "stream" -> {
+                Stream stream = new Stream(new Flow.Subscriber<>() {
+                    public void onSubscribe(Flow.Subscription subscription) {
+                    }
+                    public void onNext(Object item) {
+                        blackhole.consume(item);
+                    }
+                    public void onError(Throwable throwable) {
+                    }
+                    public void onComplete() {
+                    }
+                }, new Default());
+                stream.request(Long.MAX_VALUE);
+                yield stream;
+            }
+            case "columnar" -> new Columnar();
+            default -> throw new IllegalArgumentException(name);
+        };
+    }
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        reducer = makeReducer(reducerName, blackhole);
+
+        String[] names = {"id", "name", "score", "active"};
+        OID[] oids = {OID.INT8, OID.TEXT, OID.FLOAT8, OID.BOOL};
+        keys = new Object[names.length];
+        RowDescription.Column[] columns = new RowDescription.Column[names.length];
+        for (int i = 0; i < names.length; i++) {
+            keys[i] = reducer.transformKey(names[i]);
+            columns[i] = new RowDescription.Column(i, names[i], 0, 0, oids[i].toInt(), (short) -1, -1, Format.BIN);
+        }
+        rowDescription = new RowDescription((short) names.length, columns);
+        decoders = new TypeRegistry(new DecoderTxt(), new DecoderBin()).plan(rowDescription);
+
+        rows = new Object[rowCount][];
+        dataRows = new DataRow[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            String name = "name " + (i % 10);
+            rows[i] = new Object[] {(long) i, name, i / 2.0, i % 2 == 0};
+            dataRows[i] = new DataRow((short) 4, new ByteBuffer[] {
+                    ByteBuffer.allocate(8).putLong(0, i),
+                    ByteBuffer.wrap(name.getBytes(StandardCharsets.UTF_8)),
+                    ByteBuffer.allocate(8).putDouble(0, i / 2.0),
+                    ByteBuffer.wrap(new byte[] {(byte) (i % 2 == 0 ? 1 : 0)})
+            });
+        }
+    }
+
+    @Benchmark
+    public Object reduce() {
+        Object acc = reducer.initiate();
+        if (reducer instanceof IRowReducer rowReducer) {
+            acc = rowReducer.describe(acc, rowDescription, keys, decoders);
+            for (DataRow dataRow: dataRows) {
+                for (ByteBuffer buf: dataRow.values()) {
+                    buf.rewind();
+                }
+                acc = rowReducer.appendRow(acc, dataRow);
+            }
+        }
+        else {
+            for (Object[] vals: rows) {
+                acc = reducer.append(acc, reducer.compose(keys, vals));
+            }
+        }
+        return reducer.finalize(acc);
+    }
+}
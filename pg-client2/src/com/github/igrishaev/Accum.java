@@ -1,27 +1,47 @@
 package com.github.igrishaev;
 
+import com.github.igrishaev.codec.ACopyParser;
+import com.github.igrishaev.codec.IDecoder;
+import com.github.igrishaev.enums.OID;
 import com.github.igrishaev.enums.Phase;
 import com.github.igrishaev.msg.*;
 import com.github.igrishaev.reducer.IReducer;
 
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.List;
 
 public class Accum {
 
      public static class Node {
 
          public CopyOutResponse copyOutResponse;
+         public CopyInResponse copyInResponse;
          public RowDescription rowDescription;
          public CommandComplete commandComplete;
          public ParseComplete parseComplete;
          public ParameterDescription parameterDescription;
+         public PortalSuspended portalSuspended;
          public Object[] keys;
+         public IDecoder[] decoders;
+         public LazyRow.Schema lazySchema;
+         public int rowCount;
          public Object acc;
          public Object res;
 
+         public boolean isComplete() {
+             return commandComplete != null || portalSuspended != null;
+         }
+
          public Result toResult() {
 
+             // Execute has hit its row limit; there is no tag.
+             if (commandComplete == null) {
+                 return new Result(null, rowCount, res);
+             }
+
              String[] parts = commandComplete.tag().split(" +");
              String lead = parts[0];
              int rowsProcessed = switch (lead) {
@@ -39,11 +59,23 @@ public class Accum {
     }
 
     public OutputStream outputStream;
+    public Runnable copyIn;
+    public Throwable copyError;
+    public Object[] copyKeys;
+    public List<OID> copyOIDs;
+    public boolean copyCSV;
+    public ACopyParser copyParser;
+    public WritableByteChannel copyChannel;
+    public ByteBuffer[] copyBuffers;
+    public int copyBufferCount;
     public Phase phase;
     public ArrayList<Node> nodes;
     public ArrayList<ErrorResponse> errorResponses;
+    public int errorIndex;
     public Node current;
     public IReducer reducer;
+    public boolean lazyRows;
+    public boolean dedupStrings;
 
     public Accum(Phase phase, IReducer reducer, OutputStream outputStream) {
         this.phase = phase;
@@ -51,6 +83,7 @@ public class Accum {
         this.outputStream = outputStream;
         nodes = new ArrayList<>(2);
         errorResponses = new ArrayList<>(1);
+        errorIndex = -1;
         addNode();
     }
 
@@ -58,9 +91,11 @@ public class Accum {
     public ArrayList<Result> getResults () {
         final ArrayList<Result> results = new ArrayList<>(1);
         for (Node node: nodes) {
-            if (node.commandComplete != null) {
-                if (phase == Phase.COPY) {
-                    node.res = node.copyOutResponse;
+            if (node.isComplete()) {
+                if (phase == Phase.COPY && copyKeys == null) {
+                    node.res = node.copyOutResponse != null
+                            ? node.copyOutResponse
+                            : node.copyInResponse;
                 }
                 else {
                     node.res = reducer.finalize(node.acc);
@@ -72,8 +107,12 @@ public class Accum {
     }
 
     public void setCurrentValues (Object[] values) {
-        Object row = reducer.compose(current.keys, values);
+        setCurrentRow(reducer.compose(current.keys, values));
+    }
+
+    public void setCurrentRow (Object row) {
         current.acc = reducer.append(current.acc, row);
+        current.rowCount++;
     }
 
     public void addNode() {
@@ -0,0 +1,79 @@
+package com.github.igrishaev;
+
+import clojure.lang.IExceptionInfo;
+import clojure.lang.IPersistentMap;
+import clojure.lang.ITransientCollection;
+import clojure.lang.Keyword;
+import clojure.lang.PersistentHashMap;
+import clojure.lang.PersistentVector;
+import clojure.lang.RT;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A failed executeBatch: the index of the failed item, the fields
+ * of the ErrorResponse (none when the item could not be encoded)
+ * and the results of the items before it, which are rolled back
+ * anyway. In Clojure, these come with ex-data.
+ *
+ * The results are not serialized, they hold the decoded rows.
+ */
+public class BatchError extends PGError implements IExceptionInfo {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int index;
+    private final int count;
+    private final HashMap<String, String> errorFields;
+    private final transient List<Result> results;
+
+    public BatchError(Throwable e,
+                      int index,
+                      int count,
+                      Map<String, String> errorFields,
+                      List<Result> results,
+                      String message) {
+        super(e, message);
+        this.index = index;
+        this.count = count;
+        this.errorFields = new HashMap<>(errorFields);
+        this.results = results;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public Map<String, String> getErrorFields() {
+        return errorFields;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    public IPersistentMap getData() {
+        Object error = PersistentHashMap.EMPTY;
+        for (Map.Entry<String, String> e: errorFields.entrySet()) {
+            error = RT.assoc(error, Keyword.intern(e.getKey()), e.getValue());
+        }
+        ITransientCollection rowCounts = PersistentVector.EMPTY.asTransient();
+        if (results != null) {
+            for (Result result: results) {
+                rowCounts = rowCounts.conj(result.rowsProcessed());
+            }
+        }
+        return PersistentHashMap.create(
+                Keyword.intern("index"), index,
+                Keyword.intern("count"), count,
+                Keyword.intern("error"), error,
+                Keyword.intern("results"), rowCounts.persistent()
+        );
+    }
+}
@@ -2,6 +2,7 @@ package com.github.igrishaev;
 
 import clojure.lang.IFn;
 import clojure.core$identity;
+import com.github.igrishaev.codec.TypeCatalog;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Collections;
@@ -17,11 +18,14 @@ public record Config (
         Map<String, String> pgParams,
         boolean binaryEncode,
         boolean binaryDecode,
+        boolean primitiveArrays,
         boolean useSSL,
         boolean SOKeepAlive,
         boolean SOTCPnoDelay,
         int inStreamBufSize,
         int outStreamBufSize,
+        int statementCacheSize,
+        TypeCatalog typeCatalog,
         IFn fnNotification,
         IFn fnProtocolVersion,
         IFn fnNotice
@@ -37,11 +41,14 @@ public record Config (
         private final Map<String, String> pgParams = new HashMap<>();
         private boolean binaryEncode = false;
         private boolean binaryDecode = false;
+        private boolean primitiveArrays = false;
         private boolean useSSL = false;
         private boolean SOKeepAlive = true;
         private boolean SOTCPnoDelay = true;
         private int inStreamBufSize = Const.IN_STREAM_BUF_SIZE;
         private int outStreamBufSize = Const.OUT_STREAM_BUF_SIZE;
+        private int statementCacheSize = Const.STATEMENT_CACHE_SIZE;
+        private TypeCatalog typeCatalog;
         private IFn fnNotification;
         private IFn fnProtocolVersion;
         private IFn fnNotice;
@@ -79,7 +86,12 @@ public record Config (
         }
 
         public Builder binaryDecode(final boolean binaryDecode) {
-            this.binaryDecode = binaryEncode;
+            this.binaryDecode = binaryDecode;
+            return this;
+        }
+
+        public Builder primitiveArrays(final boolean primitiveArrays) {
+            this.primitiveArrays = primitiveArrays;
             return this;
         }
 
@@ -132,6 +144,19 @@ public record Config (
             return this;
         }
 
+        public Builder statementCacheSize(final int statementCacheSize) {
+            this.statementCacheSize = statementCacheSize;
+            return this;
+        }
+
+        // Share one between connections to the same database
+        // to load pg_type once; each connection has its own
+        // otherwise.
+        public Builder typeCatalog(final TypeCatalog typeCatalog) {
+            this.typeCatalog = Objects.requireNonNull(typeCatalog);
+            return this;
+        }
+
         public Config build() {
             return new Config(
                     this.user,
@@ -143,11 +168,14 @@ public record Config (
                     Collections.unmodifiableMap(this.pgParams),
                     this.binaryEncode,
                     this.binaryDecode,
+                    this.primitiveArrays,
                     this.useSSL,
                     this.SOKeepAlive,
                     this.SOTCPnoDelay,
                     this.inStreamBufSize,
                     this.outStreamBufSize,
+                    this.statementCacheSize,
+                    this.typeCatalog,
                     this.fnNotification,
                     this.fnProtocolVersion,
                     this.fnNotice
@@ -2,28 +2,48 @@ package com.github.igrishaev;
 
 import clojure.lang.IFn;
 import com.github.igrishaev.auth.MD5;
+import com.github.igrishaev.codec.ACopyParser;
+import com.github.igrishaev.codec.CopyBin;
+import com.github.igrishaev.codec.CopyBinParser;
+import com.github.igrishaev.codec.CopyCSVParser;
+import com.github.igrishaev.codec.CopyTxtParser;
 import com.github.igrishaev.codec.DecoderBin;
 import com.github.igrishaev.codec.DecoderTxt;
 import com.github.igrishaev.codec.EncoderBin;
 import com.github.igrishaev.codec.EncoderTxt;
+import com.github.igrishaev.codec.IDecoder;
+import com.github.igrishaev.codec.IEncoder;
+import com.github.igrishaev.codec.PGType;
+import com.github.igrishaev.codec.TypeCatalog;
+import com.github.igrishaev.codec.TypeRegistry;
 import com.github.igrishaev.enums.*;
 import com.github.igrishaev.msg.*;
 import com.github.igrishaev.reducer.Default;
 import com.github.igrishaev.reducer.Dummy;
 import com.github.igrishaev.reducer.IReducer;
+import com.github.igrishaev.reducer.IRowReducer;
+import com.github.igrishaev.reducer.Matrix;
+import com.github.igrishaev.reducer.Stream;
+import com.github.igrishaev.util.BBTool;
 import com.github.igrishaev.util.DummyOutputStream;
 import com.github.igrishaev.util.SQL;
 
 import java.io.IOException;
 import java.io.Closeable;
-import java.io.BufferedInputStream;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.BufferedOutputStream;
-import java.io.UnsupportedEncodingException;
 import java.util.*;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Flow;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 public class Connection implements Closeable {
 
@@ -34,19 +54,23 @@ public class Connection implements Closeable {
 
     private int pid;
     private int secretKey;
+    private long copyInBytes;
     private TXStatus txStatus;
     private Socket socket;
-    private BufferedInputStream inStream;
-    private BufferedOutputStream outStream;
+    private MessageReader msgReader;
+    private MessageWriter msgWriter;
     private final Map<String, String> params;
 
     private final DecoderTxt decoderTxt;
     private final EncoderTxt encoderTxt;
     private final DecoderBin decoderBin;
     private final EncoderBin encoderBin;
+    private final TypeRegistry typeRegistry;
+    private TypeRegistry lazyRegistry;
 
     private final OutputStream dummyOutputStream;
     private final IReducer dummyReducer;
+    private final StatementCache statementCache;
 
     public Connection(String host, int port, String user, String password, String database) {
         this(new Config.Builder(user, database)
@@ -62,12 +86,21 @@ public class Connection implements Closeable {
         this.decoderTxt = new DecoderTxt();
         this.encoderTxt = new EncoderTxt();
         this.decoderBin = new DecoderBin();
+        this.decoderBin.setPrimitiveArrays(config.primitiveArrays());
         this.encoderBin = new EncoderBin();
+        this.typeRegistry = new TypeRegistry(
+                decoderTxt,
+                decoderBin,
+                config.typeCatalog() == null ? new TypeCatalog() : config.typeCatalog()
+        );
         this.dummyReducer = new Dummy();
         this.dummyOutputStream = new DummyOutputStream();
         this.id = UUID.randomUUID();
         this.createdAt = System.currentTimeMillis();
         this.aInt = new AtomicInteger();
+        this.statementCache = config.statementCacheSize() > 0
+                ? new StatementCache(config.statementCacheSize())
+                : null;
         connect();
     }
 
@@ -125,11 +158,14 @@ public class Connection implements Closeable {
 
     private void setParam (String param, String value) {
         params.put(param, value);
+        lazyRegistry = null;
         switch (param) {
             case "client_encoding":
+                msgWriter.setEncoding(value);
                 encoderBin.setEncoding(value);
                 encoderTxt.setEncoding(value);
-            case "server_encoding":
+                // The server converts values into the client
+                // encoding, whatever its own one is.
                 decoderTxt.setEncoding(value);
                 decoderBin.setEncoding(value);
                 break;
@@ -152,10 +188,6 @@ public class Connection implements Closeable {
         return params.getOrDefault("server_encoding", Const.UTF8);
     }
 
-    private String getClientEncoding() {
-        return params.getOrDefault("client_encoding", Const.UTF8);
-    }
-
     public Integer getPort () {
         return config.port();
     }
@@ -194,47 +226,49 @@ public class Connection implements Closeable {
         final int port = getPort();
         final String host = getHost();
 
+        SocketChannel channel;
+
         try {
-            socket = new Socket(host, port);
+            channel = SocketChannel.open(new InetSocketAddress(host, port));
+            socket = channel.socket();
         }
         catch (IOException e) {
             throw new PGError(e, "Cannot connect to a socket");
         }
 
         try {
-            inStream = new BufferedInputStream(
-                    socket.getInputStream(),
-                    config.inStreamBufSize()
-            );
+            socket.setTcpNoDelay(config.SOTCPnoDelay());
+            socket.setKeepAlive(config.SOKeepAlive());
         }
         catch (IOException e) {
-            throw new PGError(e, "Cannot get an input stream");
+            throw new PGError(e, "Cannot set socket options");
         }
 
         try {
-            outStream = new BufferedOutputStream(
-                    socket.getOutputStream(),
-                    config.outStreamBufSize()
+            msgReader = new MessageReader(
+                    socket.getInputStream(),
+                    config.inStreamBufSize()
             );
         }
         catch (IOException e) {
-            throw new PGError(e, "Cannot get an output stream");
+            throw new PGError(e, "Cannot get an input stream");
         }
 
+        msgWriter = new MessageWriter(channel, config.outStreamBufSize());
+
         authenticate();
     }
 
+    // Messages are only buffered here. They reach the socket
+    // on flush(), which happens at Sync/Flush boundaries and
+    // after messages that expect a response on their own.
     private void sendMessage (IMessage msg) {
         // System.out.println(msg);
-        ByteBuffer buf = msg.encode(getClientEncoding());
-        // System.out.println(Arrays.toString(buf.array()));
-        try {
-            outStream.write(buf.array());
-            outStream.flush();
-        }
-        catch (IOException e) {
-            throw new PGError(e, "could not write bb to the out stream");
-        }
+        msg.encode(msgWriter);
+    }
+
+    private void flush () {
+        msgWriter.flush();
     }
 
     private String generateStatement () {
@@ -254,18 +288,20 @@ public class Connection implements Closeable {
                     config.pgParams()
             );
         sendMessage(msg);
+        flush();
     }
 
     private void sendExecute (String portal, Long rowCount) {
         sendMessage(new Execute(portal, rowCount));
     }
 
-    private void sendCopyData (byte[] buf) {
-        sendMessage(new CopyData(buf));
+    private void sendCopyData (byte[] buf, int offset, int len) {
+        sendMessage(new CopyData(buf, offset, len));
     }
 
     private void sendCopyDone () {
         sendMessage(new CopyDone());
+        flush();
     }
 
     private void sendCopyFail () {
@@ -274,55 +310,49 @@ public class Connection implements Closeable {
 
     private void sendCopyFail (String errorMessage) {
         sendMessage(new CopyFail(errorMessage));
+        flush();
     }
 
     private void sendQuery (String query) {
         sendMessage(new Query(query));
+        flush();
     }
 
     private void sendPassword (String password) {
         sendMessage(new PasswordMessage(password));
+        flush();
     }
 
     private void sendSync () {
         sendMessage(new Sync());
+        flush();
     }
 
     private void sendFlush () {
         sendMessage(new Flush());
+        flush();
     }
 
     private void sendTerminate () {
         sendMessage(new Terminate());
+        flush();
     }
 
     private void sendSSLRequest () {
         sendMessage(new SSLRequest(Const.SSL_CODE));
+        flush();
     }
 
-    private byte[] readNBytes (int len) {
-        try {
-            return inStream.readNBytes(len);
-        }
-        catch (IOException e) {
-            throw new PGError("Could not read %s byte(s)", len);
-        }
-    }
-
+    // The message (and its ByteBuffer slices) is valid
+    // only until the next readMessage() call.
     private Object readMessage () {
 
-        byte[] bufHeader = readNBytes(5);
-        ByteBuffer bbHeader = ByteBuffer.wrap(bufHeader);
-
-        // System.out.println(Arrays.toString(bufHeader));
-
-        char tag = (char) bbHeader.get();
-        int bodySize = bbHeader.getInt() - 4;
+        ByteBuffer bbFrame = msgReader.readFrame();
 
-        byte[] bufBody = readNBytes(bodySize);
-        ByteBuffer bbBody = ByteBuffer.wrap(bufBody);
+        char tag = (char) bbFrame.get();
+        BBTool.skip(bbFrame, 4);
 
-        // System.out.println(Arrays.toString(bufBody));
+        ByteBuffer bbBody = bbFrame.slice();
 
         return switch (tag) {
             case 'R' -> AuthenticationResponse.fromByteBuffer(bbBody).parseResponse(bbBody);
@@ -338,10 +368,12 @@ public class Connection implements Closeable {
             case '3' -> new CloseComplete();
             case 't' -> ParameterDescription.fromByteBuffer(bbBody);
             case 'H' -> CopyOutResponse.fromByteBuffer(bbBody);
+            case 'G' -> CopyInResponse.fromByteBuffer(bbBody);
             case 'd' -> CopyData.fromByteBuffer(bbBody);
             case 'c' -> new CopyDone();
             case 'I' -> new EmptyQueryResponse();
             case 'n' -> new NoData();
+            case 's' -> new PortalSuspended();
             case 'v' -> NegotiateProtocolVersion.fromByteBuffer(bbBody);
             case 'A' -> NotificationResponse.fromByteBuffer(bbBody);
             case 'N' -> NoticeResponse.fromByteBuffer(bbBody);
@@ -371,7 +403,12 @@ public class Connection implements Closeable {
 
     public synchronized List<Result> query(String sql, ExecuteParams executeParams) {
         sendQuery(sql);
-        return interact(Phase.QUERY, executeParams.reducer()).getResults();
+        Accum acc = new Accum(Phase.QUERY, executeParams.reducer(), dummyOutputStream);
+        acc.lazyRows = executeParams.lazyRows();
+        acc.dedupStrings = executeParams.dedupStrings();
+        interact(acc);
+        acc.throwErrorResponse();
+        return acc.getResults();
     }
 
     public synchronized PreparedStatement prepare (String sql) {
@@ -384,46 +421,160 @@ public class Connection implements Closeable {
         sendMessage(parse);
         sendDescribeStatement(statement);
         sendSync();
-        sendFlush();
         Accum res = interact(Phase.PREPARE);
         ParameterDescription paramDesc = res.current.parameterDescription;
-        return new PreparedStatement(parse, paramDesc);
+        RowDescription rowDescription = res.current.rowDescription;
+        if (hasUnknownTypes(paramDesc, rowDescription) && !isTxError()) {
+            loadTypes();
+        }
+        return newPreparedStatement(parse, paramDesc, rowDescription);
+    }
+
+    private boolean isUnknownType (int typeOid) {
+        return OID.ofIntOrNull(typeOid) == null
+                && !typeRegistry.getCatalog().contains(typeOid);
     }
 
-    private void sendBind (String portal, String statement, List<Object> params, OID[] OIDs) {
+    private boolean hasUnknownTypes (ParameterDescription paramDesc,
+                                     RowDescription rowDescription) {
+        for (int typeOid: paramDesc.typeOids()) {
+            if (isUnknownType(typeOid)) {
+                return true;
+            }
+        }
+        if (rowDescription != null) {
+            for (RowDescription.Column col: rowDescription.columns()) {
+                if (isUnknownType(col.typeOid())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /*
+     * (Re)loads the types of the database into the catalog.
+     * Happens on its own when a prepared statement refers to
+     * a type the catalog doesn't know, e.g. a new one. The
+     * simple protocol (query) never does that: call it after
+     * creating a type, or the values come as strings or bytes.
+     */
+    public synchronized int loadTypes () {
+        String sql = "select oid::int8, typname::text, typtype::text, typcategory::text, "
+                + "typelem::int8, typbasetype::int8 from pg_type";
+        ExecuteParams executeParams = new ExecuteParams.Builder()
+                .reducer(new Matrix())
+                .build();
+        List<Result> results = query(sql, executeParams);
+        List<?> rows = (List<?>) results.get(0).result();
+        ArrayList<PGType> pgTypes = new ArrayList<>(rows.size());
+        for (Object row: rows) {
+            List<?> vals = (List<?>) row;
+            pgTypes.add(new PGType(
+                    ((Long) vals.get(0)).intValue(),
+                    (String) vals.get(1),
+                    ((String) vals.get(2)).charAt(0),
+                    ((String) vals.get(3)).charAt(0),
+                    ((Long) vals.get(4)).intValue(),
+                    ((Long) vals.get(5)).intValue()
+            ));
+        }
+        typeRegistry.getCatalog().load(pgTypes);
+        return pgTypes.size();
+    }
+
+    /*
+     * How to encode the parameters, resolved once per statement.
+     * A type that's not built in always goes as text: with the
+     * encoder set for its name, as its base type for a domain,
+     * or as a string.
+     */
+    private PreparedStatement newPreparedStatement (Parse parse,
+                                                    ParameterDescription paramDesc,
+                                                    RowDescription rowDescription) {
+        OID[] OIDs = paramDesc.OIDs();
         Format paramsFormat = config.binaryEncode() ? Format.BIN : Format.TXT;
-        Format columnFormat = config.binaryDecode() ? Format.BIN : Format.TXT;
-        byte[][] values = new byte[OIDs.length][];
-        String encoding = getClientEncoding();
+        IEncoder[] encoders = new IEncoder[OIDs.length];
+        // One per parameter once there is a custom type.
+        Format[] paramsFormats = null;
         for (int i = 0; i < OIDs.length; i++) {
-            Object param = params.get(i);
             OID oid = OIDs[i];
-            switch (paramsFormat) {
-                case BIN:
-                    ByteBuffer buf = encoderBin.encode(param, oid);
-                    values[i] = buf.array();
-                    break;
-                case TXT:
-                    String value = encoderTxt.encode(param, oid);
-                    try {
-                        values[i] = value.getBytes(encoding);
-                    } catch (UnsupportedEncodingException e) {
-                        throw new PGError(e, "could not encode a string, encoding: %s", encoding);
-                    }
-                    break;
-                default:
-                    throw new PGError("unknown format: %s", paramsFormat);
+            if (oid == null) {
+                if (paramsFormats == null) {
+                    paramsFormats = new Format[OIDs.length];
+                    Arrays.fill(paramsFormats, paramsFormat);
+                }
+                paramsFormats[i] = Format.TXT;
+                encoders[i] = customEncoder(paramDesc.typeOids()[i]);
+            }
+            else {
+                encoders[i] = switch (paramsFormat) {
+                    case TXT -> encoderTxt.encoder(oid);
+                    case BIN -> encoderBin.encoder(oid);
+                };
             }
         }
+        return new PreparedStatement(
+                parse,
+                paramDesc,
+                rowDescription,
+                paramsFormats == null ? new Format[] {paramsFormat} : paramsFormats,
+                encoders
+        );
+    }
+
+    // An encoder set by type name is looked up for each value,
+    // so that it applies to the cached statements too.
+    private IEncoder customEncoder (int typeOid) {
+        OID baseOID = typeRegistry.baseOID(typeOid);
+        IEncoder base = baseOID == null
+                ? encoderTxt::encodeCustom
+                : encoderTxt.encoder(baseOID);
+        return (x, out) -> {
+            Function<Object, String> encoder = typeRegistry.encoder(typeOid);
+            if (encoder == null) {
+                base.encode(x, out);
+                return;
+            }
+            String text = encoder.apply(x);
+            if (text == null) {
+                throw new PGError("the encoder of type %s returned null for %s", typeOid, x);
+            }
+            encoderTxt.encodeCustom(text, out);
+        };
+    }
+
+    // Binary only for the columns there is a binary decoder for.
+    private Format[] columnFormats (RowDescription rowDescription) {
+        if (!config.binaryDecode()) {
+            return new Format[] {Format.TXT};
+        }
+        if (rowDescription == null) {
+            return new Format[] {Format.BIN};
+        }
+        return typeRegistry.columnFormats(rowDescription);
+    }
+
+    private void sendBind (String portal,
+                           PreparedStatement ps,
+                           List<Object> params) {
         Bind msg = new Bind(
                 portal,
-                statement,
-                values,
-                OIDs,
-                paramsFormat,
-                columnFormat
+                ps.parse().statement(),
+                params,
+                ps.encoders(),
+                ps.paramsFormats(),
+                columnFormats(ps.rowDescription())
         );
-        sendMessage(msg);
+        // Parameters are encoded in the middle of the message;
+        // on failure, drop it so the writer can be used again.
+        try {
+            sendMessage(msg);
+        }
+        catch (Throwable e) {
+            msgWriter.reset();
+            throw e;
+        }
     }
 
     public Object executeStatement (PreparedStatement ps) {
@@ -432,16 +583,23 @@ public class Connection implements Closeable {
 
     public synchronized List<Result> executeStatement (PreparedStatement ps,
                                                        ExecuteParams executeParams) {
+        Accum acc = executeStatementAccum(ps, executeParams);
+        acc.throwErrorResponse();
+        return acc.getResults();
+    }
+
+    private Accum executeStatementAccum (PreparedStatement ps, ExecuteParams executeParams) {
         String portal = generatePortal();
-        String statement = ps.parse().statement();
-        OID[] OIDs = ps.parameterDescription().OIDs();
-        sendBind(portal, statement, executeParams.params(), OIDs);
+        sendBind(portal, ps, executeParams.params());
         sendDescribePortal(portal);
         sendExecute(portal, executeParams.rowCount());
         sendClosePortal(portal);
         sendSync();
-        sendFlush();
-        return interact(Phase.EXECUTE, executeParams.reducer()).getResults();
+        Accum acc = new Accum(Phase.EXECUTE, executeParams.reducer(), dummyOutputStream);
+        acc.lazyRows = executeParams.lazyRows();
+        acc.dedupStrings = executeParams.dedupStrings();
+        interact(acc);
+        return acc;
     }
 
     public synchronized List<Result> execute (String sql) {
@@ -453,10 +611,312 @@ public class Connection implements Closeable {
     }
 
     public synchronized List<Result> execute (String sql, ExecuteParams executeParams) {
+        if (statementCache == null) {
+            PreparedStatement ps = prepare(sql, executeParams);
+            List<Result> res = executeStatement(ps, executeParams);
+            closeStatement(ps);
+            return res;
+        }
+
+        PreparedStatement ps = prepareCached(sql, executeParams);
+        Accum acc = executeStatementAccum(ps, executeParams);
+
+        // The statement has been deallocated or the underlying tables
+        // have changed. Prepare it again, and retry unless the error
+        // has broken the current transaction.
+        if (isStaleStatement(acc)) {
+            statementCache.remove(sql, executeParams.OIDs());
+            sendCloseStatement(ps.parse().statement());
+            if (isIdle()) {
+                ps = prepareCached(sql, executeParams);
+                acc = executeStatementAccum(ps, executeParams);
+            }
+        }
+
+        acc.throwErrorResponse();
+        return acc.getResults();
+    }
+
+    private PreparedStatement prepareCached (String sql, ExecuteParams executeParams) {
+        List<OID> OIDs = executeParams.OIDs();
+        PreparedStatement ps = statementCache.get(sql, OIDs);
+        if (ps == null) {
+            // Closing the evicted statement goes together with Parse.
+            PreparedStatement evicted = statementCache.evict();
+            if (evicted != null) {
+                sendCloseStatement(evicted.parse().statement());
+            }
+            ps = prepare(sql, executeParams);
+            statementCache.put(sql, OIDs, ps);
+        }
+        return ps;
+    }
+
+    private static boolean isStaleStatement (Accum acc) {
+        if (acc.errorResponses.isEmpty()) {
+            return false;
+        }
+        Map<String, String> fields = acc.errorResponses.get(0).fields();
+        return switch (fields.getOrDefault("code", "")) {
+            // prepared statement does not exist
+            case "26000" -> true;
+            // cached plan must not change result type
+            case "0A000" -> "RevalidateCachedQuery".equals(fields.get("function"));
+            default -> false;
+        };
+    }
+
+    public synchronized long getStatementCacheHits () {
+        return statementCache == null ? 0 : statementCache.getHits();
+    }
+
+    public synchronized long getStatementCacheMisses () {
+        return statementCache == null ? 0 : statementCache.getMisses();
+    }
+
+    // Dedup string caches (see ExecuteParams.dedupStrings)
+    // of all the results so far.
+    public synchronized long getStringCacheHits () {
+        return typeRegistry.getStringCacheStats().getHits();
+    }
+
+    public synchronized long getStringCacheMisses () {
+        return typeRegistry.getStringCacheStats().getMisses();
+    }
+
+    public synchronized int getStatementCacheSize () {
+        return statementCache == null ? 0 : statementCache.size();
+    }
+
+    public synchronized List<Result> executeBatch (PreparedStatement ps,
+                                                   List<List<Object>> paramsList) {
+        return executeBatch(ps, paramsList, new ExecuteParams.Builder().build());
+    }
+
+    /*
+     * Sends a Bind/Describe/Execute triplet per item and a single
+     * Sync at the end, so the whole batch takes one round trip
+     * and runs in one (implicit) transaction. Every BATCH_CHUNK_SIZE
+     * items, the client asks the server to flush and reads what's
+     * been sent so far, so that neither side blocks on a full socket.
+     */
+    public synchronized List<Result> executeBatch (PreparedStatement ps,
+                                                   List<List<Object>> paramsList,
+                                                   ExecuteParams executeParams) {
+        Accum acc = new Accum(Phase.EXECUTE, executeParams.reducer(), dummyOutputStream);
+        acc.lazyRows = executeParams.lazyRows();
+        acc.dedupStrings = executeParams.dedupStrings();
+        long flushCount = msgWriter.getFlushCount();
+        int sent = 0;
+
+        for (List<Object> params: paramsList) {
+            if (sent > 0 && sent % Const.BATCH_CHUNK_SIZE == 0) {
+                sendFlush();
+                if (!readBatchResults(acc, sent)) {
+                    break;
+                }
+            }
+            try {
+                sendBind("", ps, params);
+            }
+            catch (Throwable e) {
+                // The writer has been reset. Some of the items might
+                // have reached the server already: an Execute of a
+                // missing portal fails, so the server skips them up
+                // to Sync and rolls back the implicit transaction.
+                if (msgWriter.getFlushCount() != flushCount) {
+                    sendExecute(Const.BATCH_FAIL_PORTAL, 0);
+                    sendSync();
+                    interact(acc);
+                }
+                throw new BatchError(e,
+                                     sent,
+                                     paramsList.size(),
+                                     Collections.emptyMap(),
+                                     acc.getResults(),
+                                     String.format("could not encode batch item %s", sent));
+            }
+            sendDescribePortal("");
+            sendExecute("", executeParams.rowCount());
+            sent++;
+        }
+
+        sendSync();
+        interact(acc);
+
+        if (!acc.errorResponses.isEmpty()) {
+            ErrorResponse errRes = acc.errorResponses.get(0);
+            throw new BatchError(null,
+                                 acc.errorIndex,
+                                 paramsList.size(),
+                                 errRes.fields(),
+                                 acc.getResults(),
+                                 String.format("batch item %s of %s failed, ErrorResponse: %s",
+                                               acc.errorIndex,
+                                               paramsList.size(),
+                                               errRes.fields()));
+        }
+
+        return acc.getResults();
+    }
+
+    private boolean readBatchResults (Accum acc, int count) {
+        while (acc.nodes.size() - 1 < count && acc.errorResponses.isEmpty()) {
+            handleMessage(readMessage(), acc);
+        }
+        return acc.errorResponses.isEmpty();
+    }
+
+    /*
+     * Runs a query and passes its rows to the subscriber one
+     * by one, respecting its demand (see reducer.Stream).
+     * Blocks until the query is done; returns the number
+     * of rows the subscriber has received.
+     */
+    public synchronized long stream (String sql,
+                                     ExecuteParams executeParams,
+                                     Flow.Subscriber<Object> subscriber) {
+        Stream stream = new Stream(subscriber, executeParams.reducer());
+        ExecuteParams streamParams = new ExecuteParams(
+                executeParams.params(),
+                executeParams.OIDs(),
+                stream,
+                executeParams.rowCount(),
+                executeParams.lazyRows(),
+                executeParams.dedupStrings()
+        );
+        subscriber.onSubscribe(stream);
+        List<Result> results;
+        try {
+            results = execute(sql, streamParams);
+        }
+        catch (Throwable e) {
+            stream.restoreInterrupt();
+            if (!stream.isCancelled()) {
+                subscriber.onError(e);
+            }
+            throw e;
+        }
+        stream.restoreInterrupt();
+        Throwable error = stream.getError();
+        if (error != null) {
+            if (!stream.isCancelled()) {
+                subscriber.onError(error);
+            }
+            if (error instanceof PGError pgError) {
+                throw pgError;
+            }
+            throw new PGError(error, "the stream subscriber has failed");
+        }
+        if (!stream.isCancelled()) {
+            subscriber.onComplete();
+        }
+        long total = 0;
+        for (Result result: results) {
+            total += (Long) result.result();
+        }
+        return total;
+    }
+
+    public synchronized Cursor cursor (String sql) {
+        return cursor(sql, new ExecuteParams.Builder().build());
+    }
+
+    public synchronized Cursor cursor (String sql, ExecuteParams executeParams) {
+        checkCursorTransaction();
         PreparedStatement ps = prepare(sql, executeParams);
-        List<Result> res = executeStatement(ps, executeParams);
-        closeStatement(ps);
-        return res;
+        try {
+            return openCursor(ps, executeParams, true);
+        }
+        catch (PGError e) {
+            closeStatement(ps);
+            throw e;
+        }
+    }
+
+    public synchronized Cursor cursor (PreparedStatement ps, ExecuteParams executeParams) {
+        checkCursorTransaction();
+        return openCursor(ps, executeParams, false);
+    }
+
+    // A named portal lives until the end of the transaction,
+    // while an implicit one ends with the first Sync.
+    private void checkCursorTransaction () {
+        if (!isTransaction()) {
+            throw new PGError("a cursor can be opened only in a transaction");
+        }
+    }
+
+    private Cursor openCursor (PreparedStatement ps,
+                               ExecuteParams executeParams,
+                               boolean isOwnStatement) {
+        String portal = generatePortal();
+        sendBind(portal, ps, executeParams.params());
+        sendDescribePortal(portal);
+        sendSync();
+        Accum acc = interact(Phase.EXECUTE, executeParams.reducer());
+        RowDescription rowDescription = acc.current.rowDescription;
+        // One plan for all the pages, so are the string caches.
+        IDecoder[] decoders = rowDescription == null
+                ? null
+                : typeRegistry.plan(rowDescription, executeParams.dedupStrings());
+        return new Cursor(
+                this,
+                isOwnStatement ? ps : null,
+                portal,
+                rowDescription,
+                acc.current.keys,
+                decoders,
+                executeParams
+        );
+    }
+
+    // A custom decoder for a type; it applies to the results
+    // described from now on.
+    public synchronized void registerDecoder (OID oid, Format format, IDecoder decoder) {
+        typeRegistry.register(oid, format, decoder);
+        lazyRegistry = null;
+    }
+
+    // The same for a type that's not built in, by its name
+    // (citext, hstore, an enum...). Goes to the type catalog,
+    // which might be shared with other connections.
+    public synchronized void registerDecoder (String typeName, Format format, IDecoder decoder) {
+        typeRegistry.getCatalog().register(typeName, format, decoder);
+    }
+
+    // A text encoder for the parameters of a type that's not
+    // built in, by its name. Goes to the type catalog too.
+    public synchronized void registerEncoder (String typeName, Function<Object, String> encoder) {
+        typeRegistry.getCatalog().register(typeName, encoder);
+    }
+
+    synchronized Accum.Node fetchCursor (String portal,
+                                         RowDescription rowDescription,
+                                         Object[] keys,
+                                         IDecoder[] decoders,
+                                         IReducer reducer,
+                                         int rowCount,
+                                         boolean lazyRows) {
+        sendExecute(portal, rowCount);
+        sendSync();
+        Accum acc = new Accum(Phase.EXECUTE, reducer, dummyOutputStream);
+        acc.lazyRows = lazyRows;
+        if (rowDescription != null) {
+            describeNode(acc, rowDescription, keys, decoders);
+        }
+        interact(acc);
+        acc.throwErrorResponse();
+        return acc.nodes.get(0);
+    }
+
+    synchronized void closeCursor (String portal, PreparedStatement ps) {
+        sendClosePortal(portal);
+        if (ps != null) {
+            sendCloseStatement(ps.parse().statement());
+        }
+        sendSync();
+        interact(Phase.CLOSE);
     }
 
     private void sendCloseStatement (String statement) {
@@ -476,20 +936,23 @@ public class Connection implements Closeable {
     public synchronized void closeStatement (String statement) {
         sendCloseStatement(statement);
         sendSync();
-        sendFlush();
         interact(Phase.CLOSE);
     }
 
-    private Accum interact(Phase phase, IReducer reducer, OutputStream outputStream) {
-        Accum acc = new Accum(phase, reducer, outputStream);
+    private void interact(Accum acc) {
         while (true) {
             final Object msg = readMessage();
             // System.out.println(msg);
             handleMessage(msg, acc);
-            if (isEnough(msg, phase)) {
+            if (isEnough(msg, acc.phase)) {
                 break;
             }
         }
+    }
+
+    private Accum interact(Phase phase, IReducer reducer, OutputStream outputStream) {
+        Accum acc = new Accum(phase, reducer, outputStream);
+        interact(acc);
         acc.throwErrorResponse();
         return acc;
     }
@@ -566,10 +1029,17 @@ public class Connection implements Closeable {
             case CopyOutResponse x:
                 handleCopyOutResponse(x, acc);
                 break;
+            case CopyInResponse x:
+                handleCopyInResponse(x, acc);
+                break;
             case CopyData x:
                 handleCopyData(x, acc);
                 break;
             case CopyDone ignored:
+                handleCopyDone(acc);
+                break;
+            case PortalSuspended x:
+                handlePortalSuspended(x, acc);
                 break;
 
             default: throw new PGError("Cannot handle this message: %s", msg);
@@ -607,22 +1077,366 @@ public class Connection implements Closeable {
 
     private void handleCopyOutResponse(CopyOutResponse msg, Accum acc) {
         acc.current.copyOutResponse = msg;
+        if (acc.copyKeys != null && acc.copyError == null) {
+            try {
+                acc.copyParser = copyParser(msg, acc);
+            }
+            catch (Throwable e) {
+                acc.copyError = e;
+            }
+        }
+    }
+
+    // Binary COPY goes with binary decoders; text and CSV go with
+    // text ones. A missing OID is bytea or text, respectively.
+    private ACopyParser copyParser(CopyOutResponse msg, Accum acc) {
+        Object[] keys = acc.copyKeys;
+        if (msg.columnCount() != keys.length) {
+            throw new PGError("COPY returns %s column(s) but %s name(s) given",
+                    msg.columnCount(), keys.length);
+        }
+        acc.current.keys = keys;
+        List<OID> OIDs = acc.copyOIDs;
+        Format format = msg.format();
+        IDecoder[] decoders = new IDecoder[keys.length];
+        for (int i = 0; i < decoders.length; i++) {
+            OID oid = OIDs.isEmpty() ? null : OIDs.get(i);
+            if (oid == null) {
+                oid = format == Format.BIN ? OID.BYTEA : OID.TEXT;
+            }
+            decoders[i] = typeRegistry.decoder(oid, format);
+        }
+        return switch (format) {
+            case BIN -> new CopyBinParser(decoders, acc::setCurrentValues);
+            case TXT -> acc.copyCSV
+                    ? new CopyCSVParser(decoders, acc::setCurrentValues)
+                    : new CopyTxtParser(decoders, acc::setCurrentValues);
+        };
     }
 
     private void handleCopyData(CopyData msg, Accum acc) {
+        if (acc.copyChannel != null) {
+            if (acc.copyError == null) {
+                acc.copyBuffers[acc.copyBufferCount++] = ByteBuffer.wrap(msg.bytes(), msg.offset(), msg.length());
+                if (acc.copyBufferCount == acc.copyBuffers.length || !msgReader.hasFrame('d')) {
+                    writeCopyBuffers(acc);
+                }
+            }
+            return;
+        }
+        if (acc.copyKeys != null) {
+            ACopyParser parser = acc.copyParser;
+            if (parser != null) {
+                try {
+                    parser.feed(msg.bytes(), msg.offset(), msg.length());
+                }
+                catch (Throwable e) {
+                    acc.copyError = e;
+                    acc.copyParser = null;
+                }
+            }
+            return;
+        }
         try {
-            acc.outputStream.write(msg.bytes());
+            acc.outputStream.write(msg.bytes(), msg.offset(), msg.length());
         } catch (IOException e) {
             throw new PGError(e, "could not handle CopyData response");
         }
     }
 
+    /*
+     * The payloads are slices of the read buffer, valid as long as
+     * the reader doesn't refill it. So they pile up while the next
+     * CopyData is buffered in full and go to the channel in one
+     * gathering write, with no copying in between.
+     */
+    private void writeCopyBuffers(Accum acc) {
+        ByteBuffer[] bufs = acc.copyBuffers;
+        int count = acc.copyBufferCount;
+        acc.copyBufferCount = 0;
+        try {
+            if (acc.copyChannel instanceof GatheringByteChannel gathering) {
+                int offset = 0;
+                while (offset < count) {
+                    gathering.write(bufs, offset, count - offset);
+                    while (offset < count && !bufs[offset].hasRemaining()) {
+                        offset++;
+                    }
+                }
+            }
+            else {
+                for (int i = 0; i < count; i++) {
+                    while (bufs[i].hasRemaining()) {
+                        acc.copyChannel.write(bufs[i]);
+                    }
+                }
+            }
+        }
+        catch (Throwable e) {
+            acc.copyError = e;
+        }
+        Arrays.fill(bufs, 0, count, null);
+    }
+
+    private void handleCopyDone(Accum acc) {
+        ACopyParser parser = acc.copyParser;
+        acc.copyParser = null;
+        if (parser != null) {
+            try {
+                parser.finish();
+            }
+            catch (Throwable e) {
+                acc.copyError = e;
+            }
+        }
+    }
+
+    // The data goes to the first COPY FROM STDIN of copyIn;
+    // any other one fails at once.
+    private void handleCopyInResponse(CopyInResponse msg, Accum acc) {
+        acc.current.copyInResponse = msg;
+        Runnable copyIn = acc.copyIn;
+        acc.copyIn = null;
+        if (copyIn != null) {
+            copyIn.run();
+            return;
+        }
+        sendCopyFail();
+        // Sync has been sent already, but it's ignored in COPY.
+        if (acc.phase == Phase.EXECUTE) {
+            sendSync();
+        }
+    }
+
     public synchronized List<Result> copyOut (String sql, OutputStream outputStream) {
         sendQuery(sql);
         Accum acc = interact(Phase.COPY, outputStream);
         return acc.getResults();
     }
 
+    /*
+     * Like copyOut but the data goes straight from the read buffer
+     * into the channel, e.g. a FileChannel, in large batches. On a
+     * write error, the rest of the data is skipped and the error
+     * is thrown once the connection is idle again. The channel is
+     * not closed.
+     */
+    public synchronized List<Result> copyOut (String sql, WritableByteChannel channel) {
+        sendQuery(sql);
+        Accum acc = new Accum(Phase.COPY, dummyReducer, dummyOutputStream);
+        acc.copyChannel = channel;
+        acc.copyBuffers = new ByteBuffer[Const.COPY_MAX_BUFFERS];
+        interact(acc);
+        if (acc.copyError != null) {
+            throw new PGError(acc.copyError, "could not write the COPY data");
+        }
+        acc.throwErrorResponse();
+        return acc.getResults();
+    }
+
+    public synchronized List<Result> copyOutRows (String sql, List<String> names) {
+        return copyOutRows(sql, names, new ExecuteParams.Builder().build());
+    }
+
+    /*
+     * Runs COPY ... TO STDOUT in the binary, text or CSV format,
+     * parsing the data into rows for the reducer of the params as
+     * they come. COPY carries neither names nor types, so the names
+     * are given, and the OIDs of the params type the columns (bytea
+     * or text when omitted). The server doesn't tell text from CSV,
+     * so CSV is taken when the options after STDOUT say so. Options
+     * that change the layout of the data (a delimiter, a header...)
+     * are refused before the query is sent. A parsing error doesn't
+     * break the connection: the rest of the data is skipped.
+     */
+    public synchronized List<Result> copyOutRows (String sql, List<String> names, ExecuteParams executeParams) {
+        IReducer reducer = executeParams.reducer();
+        if (reducer instanceof IRowReducer) {
+            throw new PGError("COPY rows cannot go to a DataRow reducer: %s", reducer);
+        }
+        List<OID> OIDs = executeParams.OIDs();
+        if (!OIDs.isEmpty() && OIDs.size() != names.size()) {
+            throw new PGError("COPY has %s name(s) but %s OID(s) given: %s, names: %s",
+                    names.size(), OIDs.size(), OIDs, names);
+        }
+        String options = SQL.copyOutOptions(sql);
+        String option = SQL.copyLayoutOption(options);
+        if (option != null) {
+            throw new PGError("COPY rows can be parsed with the default layout only, got the %s option: %s",
+                    option, sql);
+        }
+        Object[] keys = new Object[names.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = reducer.transformKey(names.get(i));
+        }
+        sendQuery(sql);
+        Accum acc = new Accum(Phase.COPY, reducer, dummyOutputStream);
+        acc.copyKeys = keys;
+        acc.copyOIDs = OIDs;
+        acc.copyCSV = SQL.isCopyCSV(options);
+        interact(acc);
+        if (acc.copyError != null) {
+            throw new PGError(acc.copyError, "could not parse the COPY data");
+        }
+        acc.throwErrorResponse();
+        return acc.getResults();
+    }
+
+    // The data bytes sent by the last COPY of copyIn or copyInRows,
+    // the binary framing of rows included.
+    public synchronized long getCopyInBytes () {
+        return copyInBytes;
+    }
+
+    public synchronized List<Result> copyIn (String sql, ReadableByteChannel channel) {
+        return copyIn(sql, Channels.newInputStream(channel));
+    }
+
+    /*
+     * Runs COPY ... FROM STDIN with the data from the stream.
+     * The stream is never loaded at once: it's read in chunks
+     * of Const.COPY_BUFFER_SIZE, each one sent as a CopyData
+     * message right from the array. Should the stream fail,
+     * the server gets CopyFail and the COPY is rolled back.
+     * Either way, the connection is ready for the next query.
+     * The stream is not closed.
+     */
+    public synchronized List<Result> copyIn (String sql, InputStream inputStream) {
+        copyInBytes = 0;
+        sendQuery(sql);
+        Accum acc = new Accum(Phase.COPY, dummyReducer, dummyOutputStream);
+        acc.copyIn = () -> acc.copyError = sendCopyData(inputStream, acc);
+        interact(acc);
+        if (acc.copyError != null) {
+            throw new PGError(acc.copyError, "could not read the COPY source");
+        }
+        acc.throwErrorResponse();
+        return acc.getResults();
+    }
+
+    public synchronized List<Result> copyInRows (String sql,
+                                                 Iterable<?> rows,
+                                                 List<OID> OIDs) {
+        return copyInBin(sql, rows, null, OIDs);
+    }
+
+    // The keys select the values of a map in the column order.
+    public synchronized List<Result> copyInMaps (String sql,
+                                                 Iterable<?> maps,
+                                                 List<?> keys,
+                                                 List<OID> OIDs) {
+        if (keys.size() != OIDs.size()) {
+            throw new PGError("the keys and OIDs differ in size: %s and %s", keys, OIDs);
+        }
+        return copyInBin(sql, maps, keys.toArray(), OIDs);
+    }
+
+    /*
+     * Runs COPY ... FROM STDIN WITH (FORMAT BINARY) encoding the
+     * rows with the binary encoders right into CopyData messages
+     * of about Const.COPY_BUFFER_SIZE. Every column needs its
+     * type. A row that cannot be encoded fails the whole COPY,
+     * as a failing stream does in copyIn.
+     */
+    private List<Result> copyInBin (String sql, Iterable<?> rows, Object[] keys, List<OID> OIDs) {
+        IEncoder[] encoders = new IEncoder[OIDs.size()];
+        for (int i = 0; i < encoders.length; i++) {
+            OID oid = OIDs.get(i);
+            if (oid == null) {
+                throw new PGError("binary COPY needs the type of every column, OIDs: %s", OIDs);
+            }
+            encoders[i] = encoderBin.encoder(oid);
+        }
+        copyInBytes = 0;
+        sendQuery(sql);
+        Accum acc = new Accum(Phase.COPY, dummyReducer, dummyOutputStream);
+        acc.copyIn = () -> acc.copyError = sendCopyRows(rows, keys, encoders, acc);
+        interact(acc);
+        if (acc.copyError != null) {
+            throw new PGError(acc.copyError, "could not encode the COPY rows");
+        }
+        acc.throwErrorResponse();
+        return acc.getResults();
+    }
+
+    // Returns the error of the rows, if any.
+    private Throwable sendCopyRows (Iterable<?> rows, Object[] keys, IEncoder[] encoders, Accum acc) {
+        long flushCount = msgWriter.getFlushCount();
+        try {
+            msgWriter.begin('d');
+            CopyBin.putHeader(msgWriter);
+            for (Object row: rows) {
+                if (keys == null) {
+                    CopyBin.putRow(msgWriter, (List<?>) row, encoders);
+                }
+                else {
+                    CopyBin.putRow(msgWriter, (Map<?,?>) row, keys, encoders);
+                }
+                if (msgWriter.getMessageLength() >= Const.COPY_BUFFER_SIZE) {
+                    copyInBytes += msgWriter.getMessageLength() - 4;
+                    msgWriter.end();
+                    if (msgWriter.getFlushCount() != flushCount) {
+                        flushCount = msgWriter.getFlushCount();
+                        if (isCopyInterrupted(acc)) {
+                            return null;
+                        }
+                    }
+                    msgWriter.begin('d');
+                }
+            }
+            CopyBin.putTrailer(msgWriter);
+            copyInBytes += msgWriter.getMessageLength() - 4;
+            msgWriter.end();
+        }
+        catch (Throwable e) {
+            // Whatever has not been sent yet is of no use.
+            msgWriter.reset();
+            sendCopyFail();
+            return e;
+        }
+        sendCopyDone();
+        return null;
+    }
+
+    // Returns the error of the stream, if any.
+    private Exception sendCopyData (InputStream inputStream, Accum acc) {
+        byte[] chunk = new byte[Const.COPY_BUFFER_SIZE];
+        while (true) {
+            int len;
+            try {
+                len = inputStream.readNBytes(chunk, 0, chunk.length);
+            }
+            catch (Exception e) {
+                sendCopyFail();
+                return e;
+            }
+            if (len == 0) {
+                sendCopyDone();
+                return null;
+            }
+            // Flushed before the chunk is filled again.
+            sendCopyData(chunk, 0, len);
+            copyInBytes += len;
+            flush();
+            if (isCopyInterrupted(acc)) {
+                return null;
+            }
+        }
+    }
+
+    // The server doesn't wait for the end of the data to report
+    // an error, e.g. a malformed line: stop sending at once.
+    private boolean isCopyInterrupted (Accum acc) {
+        while (msgReader.hasData()) {
+            Object msg = readMessage();
+            handleMessage(msg, acc);
+            if (msg instanceof ErrorResponse) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void handleParseComplete(ParseComplete msg, Accum acc) {
         acc.current.parseComplete = msg;
     }
@@ -639,8 +1453,7 @@ public class Connection implements Closeable {
         setParam(msg.param(), msg.value());
     }
 
-    private static void handleRowDescription(RowDescription msg, Accum acc) {
-        acc.current.rowDescription = msg;
+    private void handleRowDescription(RowDescription msg, Accum acc) {
         IReducer reducer = acc.reducer;
         short size = msg.columnCount();
         Object[] keys = new Object[size];
@@ -648,31 +1461,53 @@ public class Connection implements Closeable {
             String key = msg.columns()[i].name();
             keys[i] = reducer.transformKey(key);
         }
-        acc.current.keys = keys;
+        describeNode(acc, msg, keys);
+    }
+
+    private void describeNode(Accum acc, RowDescription msg, Object[] keys) {
+        describeNode(acc, msg, keys, typeRegistry.plan(msg, acc.dedupStrings));
+    }
+
+    private void describeNode(Accum acc, RowDescription msg, Object[] keys, IDecoder[] decoders) {
+        Accum.Node node = acc.current;
+        node.rowDescription = msg;
+        node.keys = keys;
+        node.decoders = decoders;
+        if (acc.reducer instanceof IRowReducer rowReducer) {
+            node.acc = rowReducer.describe(node.acc, msg, keys, node.decoders);
+        }
+        else if (acc.lazyRows && acc.reducer.supportsLazyRows()) {
+            node.decoders = lazyPlan(msg);
+            node.lazySchema = new LazyRow.Schema(keys, node.decoders);
+        }
+    }
+
+    // Lazy rows are decoded whenever they are read, so their
+    // decoders come from a snapshot, with no string caches.
+    private IDecoder[] lazyPlan(RowDescription msg) {
+        if (lazyRegistry == null) {
+            lazyRegistry = typeRegistry.snapshot();
+        }
+        return lazyRegistry.plan(msg);
     }
 
     private void handleDataRow(DataRow msg, Accum res) {
+        if (res.reducer instanceof IRowReducer rowReducer) {
+            res.current.acc = rowReducer.appendRow(res.current.acc, msg);
+            res.current.rowCount++;
+            return;
+        }
+        if (res.current.lazySchema != null) {
+            res.setCurrentRow(new LazyRow(res.current.lazySchema, msg));
+            return;
+        }
         short size = msg.valueCount();
-        RowDescription.Column[] cols = res.current.rowDescription.columns();
+        IDecoder[] decoders = res.current.decoders;
         ByteBuffer[] bufs = msg.values();
         Object[] values = new Object[size];
         for (short i = 0; i < size; i++) {
             ByteBuffer buf = bufs[i];
-            if (buf == null) {
-                values[i] = null;
-                continue;
-            }
-            RowDescription.Column col = cols[i];
-            switch (col.format()) {
-                case TXT:
-                    values[i] = decoderTxt.decode(buf, col.typeOid());
-                    break;
-                case BIN:
-                    values[i] = decoderBin.decode(buf, col.typeOid());
-                    break;
-                default:
-                    throw new PGError("unknown format: %s", col.format());
-            }
+            values[i] = buf == null ? null : decoders[i].decode(buf);
         }
         res.setCurrentValues(values);
     }
@@ -686,7 +1521,15 @@ public class Connection implements Closeable {
         acc.addNode();
     }
 
+    private static void handlePortalSuspended(PortalSuspended msg, Accum acc) {
+        acc.current.portalSuspended = msg;
+        acc.addNode();
+    }
+
     private static void handleErrorResponse(ErrorResponse msg, Accum acc) {
+        if (acc.errorResponses.isEmpty()) {
+            acc.errorIndex = acc.nodes.size() - 1;
+        }
         acc.errorResponses.add(msg);
     }
 
@@ -711,6 +1554,7 @@ public class Connection implements Closeable {
         CancelRequest msg = new CancelRequest(Const.CANCEL_CODE, conn.pid, conn.secretKey);
         Connection temp = clone(conn);
         temp.sendMessage(msg);
+        temp.flush();
         temp.close();
     }
 
@@ -4,7 +4,9 @@ public class Const {
     public static final int PROTOCOL_VERSION = 196608;
     public static final int CANCEL_CODE = 80877102;
     public static final int SSL_CODE = 80877103;
-    public static final int COPY_BUFFER_SIZE = 2048;
+    public static final int COPY_BUFFER_SIZE = 0x10000;
+    public static final int COPY_MAX_BUFFERS = 1024;
+    public static final int COPY_BATCH_SIZE = 1000;
     public static final String COPY_FAIL_MSG = "COPY has been interrupted by the client";
     public static final int PG_PORT = 5432;
     public static final String PG_HOST = "127.0.0.1";
@@ -13,6 +15,10 @@ public class Const {
     public static final String UTF8 = "UTF-8";
     public static long EXE_MAX_ROWS = 0xFFFFFFFFL;
     public static int JSON_ENC_BUF_SIZE = 256;
+    public static int BATCH_CHUNK_SIZE = 256;
+    public static final String BATCH_FAIL_PORTAL = "pg2_batch_failed";
+    public static int STATEMENT_CACHE_SIZE = 0;
+    public static int CURSOR_PAGE_SIZE = 1000;
     public static String APP_NAME = "pg2";
     public static String CLIENT_ENCODING = "UTF8";
     public static char NULL_TAG = (char) 0;
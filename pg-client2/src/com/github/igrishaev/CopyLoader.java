@@ -0,0 +1,323 @@
+package com.github.igrishaev;
+
+import com.github.igrishaev.enums.OID;
+import com.github.igrishaev.util.MappedInputStream;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/*
+ * Loads data with COPY FROM STDIN over several connections at
+ * once, each one in a thread of its own and in a transaction.
+ * The transactions are committed when every COPY succeeds and
+ * rolled back otherwise. That's not two-phase: should a commit
+ * fail, the ones before it stay.
+ *
+ * Rows are read in the caller's thread and go to the connections
+ * in batches through a bounded queue, so a slow connection takes
+ * fewer of them. A file is split into ranges on line boundaries
+ * (so no newlines in quoted CSV fields, and no header), each range
+ * read through memory mappings.
+ *
+ * The report counts the data bytes sent: the file itself,
+ * or the rows in the binary COPY format.
+ *
+ * The connections are opened here and closed at the end, not
+ * borrowed from pg-pool: that one is built on the old client.
+ */
+public class CopyLoader {
+
+    public record Report(long rows, long bytes, int connections, long nanos) {
+
+        public double seconds() {
+            return nanos / 1e9;
+        }
+
+        public double rowsPerSecond() {
+            return rows / seconds();
+        }
+
+        public double bytesPerSecond() {
+            return bytes / seconds();
+        }
+    }
+
+    private static final List<Object> END = new ArrayList<>(0);
+    private static final int SCAN_SIZE = 0x10000;
+
+    private final Config config;
+    private final int size;
+
+    public CopyLoader(Config config, int size) {
+        if (size < 1) {
+            throw new PGError("wrong number of connections: %s", size);
+        }
+        this.config = config;
+        this.size = size;
+    }
+
+    public Report loadRows(String sql, Iterable<?> rows, List<OID> OIDs) {
+        return loadRows(sql, rows, OIDs, Const.COPY_BATCH_SIZE);
+    }
+
+    public Report loadRows(String sql, Iterable<?> rows, List<OID> OIDs, int batchSize) {
+        BlockingQueue<List<Object>> queue = new ArrayBlockingQueue<>(size * 2);
+        AtomicLong bytes = new AtomicLong();
+        List<Function<Connection, List<Result>>> tasks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tasks.add(conn -> {
+                List<Result> results = conn.copyInRows(sql, batches(queue), OIDs);
+                bytes.addAndGet(conn.getCopyInBytes());
+                return results;
+            });
+        }
+        long start = System.nanoTime();
+        long rowCount = run(tasks, futures -> produce(rows, batchSize, queue, futures));
+        return new Report(rowCount, bytes.get(), size, System.nanoTime() - start);
+    }
+
+    public Report loadFile(String sql, Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long[] bounds = splitLines(channel, fileSize);
+            List<Function<Connection, List<Result>>> tasks = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                long from = bounds[i];
+                long to = bounds[i + 1];
+                if (from < to) {
+                    tasks.add(conn -> conn.copyIn(sql, new MappedInputStream(channel, from, to)));
+                }
+            }
+            long start = System.nanoTime();
+            long rowCount = run(tasks, null);
+            return new Report(rowCount, fileSize, tasks.size(), System.nanoTime() - start);
+        }
+        catch (IOException e) {
+            throw new PGError(e, "could not read the file: %s", path);
+        }
+    }
+
+    // Range starts: each one is right after a newline.
+    private long[] splitLines(FileChannel channel, long fileSize) throws IOException {
+        long[] bounds = new long[size + 1];
+        bounds[size] = fileSize;
+        for (int i = 1; i < size; i++) {
+            long pos = Math.max(fileSize / size * i, bounds[i - 1]);
+            bounds[i] = fileSize;
+            scan:
+            while (pos < fileSize) {
+                long len = Math.min(SCAN_SIZE, fileSize - pos);
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                for (int j = 0; j < len; j++) {
+                    if (buf.get(j) == '\n') {
+                        bounds[i] = pos + j + 1;
+                        break scan;
+                    }
+                }
+                pos += len;
+            }
+        }
+        return bounds;
+    }
+
+    private static Iterable<Object> batches(BlockingQueue<List<Object>> queue) {
+        return () -> new Iterator<>() {
+
+            private Iterator<Object> batch = Collections.emptyIterator();
+            private boolean isDone;
+
+            public boolean hasNext() {
+                while (!batch.hasNext() && !isDone) {
+                    List<Object> next;
+                    try {
+                        next = queue.take();
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new PGError(e, "interrupted while waiting for rows");
+                    }
+                    if (next == END) {
+                        isDone = true;
+                    }
+                    else {
+                        batch = next.iterator();
+                    }
+                }
+                return batch.hasNext();
+            }
+
+            public Object next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.next();
+            }
+        };
+    }
+
+    private void produce(Iterable<?> rows,
+                         int batchSize,
+                         BlockingQueue<List<Object>> queue,
+                         List<Future<List<Result>>> futures) {
+        try {
+            List<Object> batch = new ArrayList<>(batchSize);
+            for (Object row: rows) {
+                batch.add(row);
+                if (batch.size() == batchSize) {
+                    put(queue, batch, futures);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                put(queue, batch, futures);
+            }
+        }
+        finally {
+            for (int i = 0; i < size; i++) {
+                put(queue, END, futures);
+            }
+        }
+    }
+
+    // Before the end, a finished COPY means a failed one, so there
+    // is no point to go on. The end markers are offered while there
+    // is someone to take them.
+    private static void put(BlockingQueue<List<Object>> queue,
+                            List<Object> batch,
+                            List<Future<List<Result>>> futures) {
+        try {
+            while (true) {
+                int done = 0;
+                for (Future<List<Result>> future: futures) {
+                    if (future.isDone()) {
+                        done++;
+                    }
+                }
+                if (batch == END) {
+                    if (done == futures.size()) {
+                        return;
+                    }
+                }
+                else if (done > 0) {
+                    throw new PGError("COPY has stopped on one of the connections");
+                }
+                if (queue.offer(batch, 10, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PGError(e, "interrupted while sending rows");
+        }
+    }
+
+    private long run(List<Function<Connection, List<Result>>> tasks,
+                     Consumer<List<Future<List<Result>>>> producer) {
+        int count = tasks.size();
+        List<Connection> conns = new ArrayList<>(count);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(count, 1));
+        try {
+            for (int i = 0; i < count; i++) {
+                conns.add(new Connection(config));
+            }
+
+            List<Future<List<Result>>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Connection conn = conns.get(i);
+                Function<Connection, List<Result>> task = tasks.get(i);
+                futures.add(executor.submit(() -> {
+                    conn.begin();
+                    return task.apply(conn);
+                }));
+            }
+
+            Throwable producerError = null;
+            if (producer != null) {
+                try {
+                    producer.accept(futures);
+                }
+                catch (Throwable e) {
+                    producerError = e;
+                }
+            }
+
+            Throwable error = null;
+            long rows = 0;
+            for (Future<List<Result>> future: futures) {
+                try {
+                    for (Result result: future.get()) {
+                        rows += result.rowsProcessed();
+                    }
+                }
+                catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause();
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    future.cancel(true);
+                    if (error == null) {
+                        error = e;
+                    }
+                }
+            }
+            if (error == null) {
+                error = producerError;
+            }
+
+            if (error != null) {
+                for (Connection conn: conns) {
+                    try {
+                        conn.rollback();
+                    }
+                    catch (Throwable ignored) {
+                    }
+                }
+                throw new PGError(error, "could not load the COPY data");
+            }
+
+            for (int i = 0; i < count; i++) {
+                try {
+                    conns.get(i).commit();
+                }
+                catch (Throwable e) {
+                    for (int j = i + 1; j < count; j++) {
+                        try {
+                            conns.get(j).rollback();
+                        }
+                        catch (Throwable ignored) {
+                        }
+                    }
+                    throw new PGError(e, "could not commit the COPY data, committed: %s of %s", i, count);
+                }
+            }
+            return rows;
+        }
+        finally {
+            executor.shutdownNow();
+            for (Connection conn: conns) {
+                conn.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.igrishaev;
+
+import clojure.lang.IFn;
+import clojure.lang.IReduceInit;
+import clojure.lang.RT;
+import clojure.lang.Reduced;
+import com.github.igrishaev.codec.IDecoder;
+import com.github.igrishaev.msg.RowDescription;
+import com.github.igrishaev.reducer.IReducer;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ * A server-side portal read by pages of rowCount rows
+ * (Const.CURSOR_PAGE_SIZE by default). Iterating gives
+ * pages, each one built by the reducer from ExecuteParams;
+ * reducing goes row by row and holds one page at most.
+ * Must be closed within the transaction it was opened in.
+ */
+public class Cursor implements Iterator<Object>, IReduceInit, AutoCloseable {
+
+    private final Connection conn;
+    private final PreparedStatement ownStatement;
+    private final String portal;
+    private final RowDescription rowDescription;
+    private final Object[] keys;
+    private final IDecoder[] decoders;
+    private final IReducer reducer;
+    private final int pageSize;
+    private final boolean lazyRows;
+    private Accum.Node page;
+    private boolean isDone;
+    private boolean isClosed;
+
+    public Cursor(Connection conn,
+                  PreparedStatement ownStatement,
+                  String portal,
+                  RowDescription rowDescription,
+                  Object[] keys,
+                  IDecoder[] decoders,
+                  ExecuteParams executeParams) {
+        this.conn = conn;
+        this.ownStatement = ownStatement;
+        this.portal = portal;
+        this.rowDescription = rowDescription;
+        this.keys = keys;
+        this.decoders = decoders;
+        this.reducer = executeParams.reducer();
+        this.pageSize = executeParams.rowCount() > 0
+                ? executeParams.rowCount()
+                : Const.CURSOR_PAGE_SIZE;
+        this.lazyRows = executeParams.lazyRows();
+        this.isDone = false;
+        this.isClosed = false;
+    }
+
+    private Accum.Node fetch(IReducer pageReducer) {
+        if (isClosed) {
+            throw new PGError("the cursor is closed");
+        }
+        Accum.Node node = conn.fetchCursor(portal, rowDescription, keys, decoders, pageReducer, pageSize, lazyRows);
+        isDone = node.commandComplete != null;
+        return node;
+    }
+
+    public boolean hasNext() {
+        if (page == null && !isDone) {
+            page = fetch(reducer);
+        }
+        return page != null && page.rowCount > 0;
+    }
+
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object result = reducer.finalize(page.acc);
+        page = null;
+        return result;
+    }
+
+    public Object reduce(IFn f, Object start) {
+        Reducing reducing = new Reducing(f, start);
+        while (!isDone && !reducing.isReduced) {
+            fetch(reducing);
+        }
+        return reducing.isReduced ? ((Reduced) reducing.acc).deref() : reducing.acc;
+    }
+
+    public boolean isDone() {
+        return isDone;
+    }
+
+    public void close() {
+        if (!isClosed) {
+            isClosed = true;
+            conn.closeCursor(portal, ownStatement);
+        }
+    }
+
+    // Feeds rows into a Clojure reducing function, the way
+    // the cursor's own reducer would compose them.
+    private class Reducing implements IReducer {
+
+        private final IFn f;
+        private Object acc;
+        private boolean isReduced;
+
+        private Reducing(IFn f, Object start) {
+            this.f = f;
+            this.acc = start;
+            this.isReduced = false;
+        }
+
+        public String[] unifyKeys(String[] keys) {
+            return reducer.unifyKeys(keys);
+        }
+
+        public Object transformKey(String key) {
+            return reducer.transformKey(key);
+        }
+
+        public Object compose(Object[] keys, Object[] vals) {
+            return isReduced ? null : reducer.compose(keys, vals);
+        }
+
+        public Object initiate() {
+            return null;
+        }
+
+        public Object append(Object ignored, Object row) {
+            if (!isReduced) {
+                acc = f.invoke(acc, row);
+                isReduced = RT.isReduced(acc);
+            }
+            return null;
+        }
+
+        public Object finalize(Object ignored) {
+            return null;
+        }
+    }
+
+}
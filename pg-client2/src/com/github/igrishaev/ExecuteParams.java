@@ -12,7 +12,9 @@ public record ExecuteParams (
         List<Object> params,
         List<OID> OIDs,
         IReducer reducer,
-        int rowCount
+        int rowCount,
+        boolean lazyRows,
+        boolean dedupStrings
 ) {
 
     public static class Builder {
@@ -21,6 +23,8 @@ public record ExecuteParams (
         private List<OID> OIDs = Collections.emptyList();
         private IReducer reducer = new Default();
         private int rowCount = 0;
+        private boolean lazyRows = false;
+        private boolean dedupStrings = false;
 
         public Builder params (List<Object> params) {
             this.params = Objects.requireNonNull(params);
@@ -52,12 +56,26 @@ public record ExecuteParams (
             return this;
         }
 
+        public Builder lazyRows (boolean lazyRows) {
+            this.lazyRows = lazyRows;
+            return this;
+        }
+
+        // The same String instance for the repeated values
+        // of each text column.
+        public Builder dedupStrings (boolean dedupStrings) {
+            this.dedupStrings = dedupStrings;
+            return this;
+        }
+
         public ExecuteParams build () {
             return new ExecuteParams(
                     params,
                     OIDs,
                     reducer,
-                    rowCount
+                    rowCount,
+                    lazyRows,
+                    dedupStrings
             );
         }
 
@@ -0,0 +1,29 @@
+package com.github.igrishaev;
+
+import java.time.Duration;
+import java.time.Period;
+
+/*
+ * Postgres interval: months, days and microseconds are
+ * kept apart as their lengths vary (a month is 28-31 days,
+ * a day is 23-25 hours across DST). Neither Period nor
+ * Duration can hold all three.
+ */
+public record Interval(int months, int days, long micros) {
+
+    public static Interval of(Period period) {
+        return new Interval((int) period.toTotalMonths(), period.getDays(), 0);
+    }
+
+    public static Interval of(Duration duration) {
+        return new Interval(0, 0, duration.toNanos() / 1000);
+    }
+
+    public Period toPeriod() {
+        return Period.of(months / 12, months % 12, days);
+    }
+
+    public Duration toDuration() {
+        return Duration.ofSeconds(micros / 1000000, (micros % 1000000) * 1000);
+    }
+}
@@ -0,0 +1,226 @@
+package com.github.igrishaev;
+
+import clojure.lang.*;
+import com.github.igrishaev.codec.IDecoder;
+import com.github.igrishaev.msg.DataRow;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/*
+ * A row that keeps the raw bytes of a DataRow and decodes
+ * a field only when it's accessed; the decoded value is
+ * memoized. Acts as a Clojure map by column keys and as
+ * an indexed collection by column numbers. Any change
+ * (assoc, dissoc, with-meta) turns it into a regular
+ * persistent map, and so does serialization.
+ *
+ * The decoders are a snapshot, so a row may be read after
+ * the connection has moved on. But the memoization isn't
+ * synchronized: a row is not thread-safe, so hand it over
+ * to another thread properly, or realize it before.
+ */
+public class LazyRow extends APersistentMap implements Indexed, IObj {
+
+    private static final long serialVersionUID = 1L;
+
+    // Shared by all the rows of a result.
+    public static class Schema {
+
+        private final IDecoder[] decoders;
+        private final Map<Object, Integer> keyIndex;
+        private final Object[] uniqueKeys;
+        private final int[] uniqueIndexes;
+
+        public Schema(Object[] keys, IDecoder[] decoders) {
+            this.decoders = decoders;
+            // The last column wins, as with a regular map.
+            this.keyIndex = new HashMap<>(keys.length * 2);
+            for (int i = 0; i < keys.length; i++) {
+                keyIndex.put(keys[i], i);
+            }
+            this.uniqueKeys = new Object[keyIndex.size()];
+            this.uniqueIndexes = new int[keyIndex.size()];
+            int j = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keyIndex.get(keys[i]) == i) {
+                    uniqueKeys[j] = keys[i];
+                    uniqueIndexes[j] = i;
+                    j++;
+                }
+            }
+        }
+    }
+
+    private static final Object NONE = new Object();
+
+    // Never serialized as is, see writeReplace().
+    private final transient Schema schema;
+    private final byte[] bytes;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final transient Object[] values;
+
+    // Copies the values out of the (reusable) read buffer.
+    public LazyRow(Schema schema, DataRow dataRow) {
+        ByteBuffer[] bufs = dataRow.values();
+        int count = bufs.length;
+        int total = 0;
+        for (ByteBuffer buf: bufs) {
+            if (buf != null) {
+                total += buf.remaining();
+            }
+        }
+        this.schema = schema;
+        this.bytes = new byte[total];
+        this.offsets = new int[count];
+        this.lengths = new int[count];
+        this.values = new Object[count];
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            ByteBuffer buf = bufs[i];
+            values[i] = NONE;
+            if (buf == null) {
+                lengths[i] = -1;
+            }
+            else {
+                int len = buf.remaining();
+                buf.get(buf.position(), bytes, offset, len);
+                offsets[i] = offset;
+                lengths[i] = len;
+                offset += len;
+            }
+        }
+    }
+
+    private Object getValue(int i) {
+        Object value = values[i];
+        if (value == NONE) {
+            value = decode(i);
+            values[i] = value;
+        }
+        return value;
+    }
+
+    private Object decode(int i) {
+        int len = lengths[i];
+        if (len == -1) {
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(bytes, offsets[i], len).slice();
+        return schema.decoders[i].decode(buf);
+    }
+
+    public IPersistentMap toPersistentMap() {
+        ITransientMap map = PersistentHashMap.EMPTY.asTransient();
+        for (int j = 0; j < schema.uniqueKeys.length; j++) {
+            map = map.assoc(schema.uniqueKeys[j], getValue(schema.uniqueIndexes[j]));
+        }
+        return map.persistent();
+    }
+
+    private Object writeReplace() {
+        return toPersistentMap();
+    }
+
+    public IPersistentMap meta() {
+        return null;
+    }
+
+    public IObj withMeta(IPersistentMap meta) {
+        return ((IObj) toPersistentMap()).withMeta(meta);
+    }
+
+    public Object nth(int i) {
+        if (i < 0 || i >= values.length) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return getValue(i);
+    }
+
+    public Object nth(int i, Object notFound) {
+        if (i < 0 || i >= values.length) {
+            return notFound;
+        }
+        return getValue(i);
+    }
+
+    public Object valAt(Object key) {
+        return valAt(key, null);
+    }
+
+    public Object valAt(Object key, Object notFound) {
+        Integer i = schema.keyIndex.get(key);
+        if (i == null) {
+            return notFound;
+        }
+        return getValue(i);
+    }
+
+    public boolean containsKey(Object key) {
+        return schema.keyIndex.containsKey(key);
+    }
+
+    public IMapEntry entryAt(Object key) {
+        Integer i = schema.keyIndex.get(key);
+        if (i == null) {
+            return null;
+        }
+        return MapEntry.create(key, getValue(i));
+    }
+
+    public int count() {
+        return schema.uniqueKeys.length;
+    }
+
+    public IPersistentMap assoc(Object key, Object val) {
+        return toPersistentMap().assoc(key, val);
+    }
+
+    public IPersistentMap assocEx(Object key, Object val) {
+        return toPersistentMap().assocEx(key, val);
+    }
+
+    public IPersistentMap without(Object key) {
+        return toPersistentMap().without(key);
+    }
+
+    public IPersistentCollection empty() {
+        return PersistentHashMap.EMPTY;
+    }
+
+    public ISeq seq() {
+        int count = count();
+        if (count == 0) {
+            return null;
+        }
+        Object[] entries = new Object[count];
+        for (int j = 0; j < count; j++) {
+            entries[j] = MapEntry.create(schema.uniqueKeys[j], getValue(schema.uniqueIndexes[j]));
+        }
+        return ArraySeq.create(entries);
+    }
+
+    public Iterator<Object> iterator() {
+        return new Iterator<Object>() {
+            private int j = 0;
+
+            public boolean hasNext() {
+                return j < schema.uniqueKeys.length;
+            }
+
+            public Object next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Object key = schema.uniqueKeys[j];
+                Object val = getValue(schema.uniqueIndexes[j]);
+                j++;
+                return MapEntry.create(key, val);
+            }
+        };
+    }
+}
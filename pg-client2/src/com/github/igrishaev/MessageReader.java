@@ -0,0 +1,101 @@
+package com.github.igrishaev;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/*
+ * Reads backend messages from a socket into a single
+ * reusable buffer. Each frame is returned as a slice
+ * of that buffer, so it's valid only until the next
+ * call of readFrame(): copy whatever must outlive it.
+ */
+public class MessageReader {
+
+    private final InputStream inStream;
+    private ByteBuffer buf;
+
+    public MessageReader(InputStream inStream, int bufSize) {
+        this.inStream = inStream;
+        this.buf = ByteBuffer.allocate(Math.max(bufSize, 5));
+        this.buf.limit(0);
+    }
+
+    private void fill(int size) {
+
+        if (!buf.hasRemaining()) {
+            buf.clear();
+            buf.limit(0);
+        }
+
+        if (buf.capacity() < size) {
+            ByteBuffer bufNew = ByteBuffer.allocate(Math.max(size, buf.capacity() * 2));
+            bufNew.put(buf);
+            bufNew.flip();
+            buf = bufNew;
+        }
+        else if (buf.capacity() - buf.position() < size) {
+            buf.compact();
+            buf.flip();
+        }
+
+        byte[] array = buf.array();
+
+        while (buf.remaining() < size) {
+            int limit = buf.limit();
+            int read;
+            try {
+                read = inStream.read(array, limit, buf.capacity() - limit);
+            }
+            catch (IOException e) {
+                throw new PGError(e, "Could not read %s byte(s)", size);
+            }
+            if (read == -1) {
+                throw new PGError("Could not read %s byte(s): end of stream", size);
+            }
+            buf.limit(limit + read);
+        }
+    }
+
+    // Whether the server has sent anything, e.g. an error
+    // in the middle of COPY FROM STDIN.
+    public boolean hasData() {
+        if (buf.hasRemaining()) {
+            return true;
+        }
+        try {
+            return inStream.available() > 0;
+        }
+        catch (IOException e) {
+            throw new PGError(e, "could not check the input stream");
+        }
+    }
+
+    // Whether the next frame has this tag and is buffered in full,
+    // so reading it keeps the previous frames in place.
+    public boolean hasFrame(char tag) {
+        int remaining = buf.remaining();
+        int pos = buf.position();
+        return remaining >= 5
+                && buf.get(pos) == tag
+                && remaining >= buf.getInt(pos + 1) + 1;
+    }
+
+    public ByteBuffer readFrame() {
+
+        if (buf.remaining() < 5) {
+            fill(5);
+        }
+
+        int size = buf.getInt(buf.position() + 1) + 1;
+
+        if (buf.remaining() < size) {
+            fill(size);
+        }
+
+        ByteBuffer frame = buf.slice(buf.position(), size);
+        buf.position(buf.position() + size);
+        return frame;
+    }
+
+}
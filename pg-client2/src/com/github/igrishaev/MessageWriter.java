@@ -0,0 +1,391 @@
+package com.github.igrishaev;
+
+import com.github.igrishaev.codec.Sink;
+import com.github.igrishaev.util.Encoding;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * Encodes outgoing messages straight into a reusable direct
+ * buffer and sends them at once with a gathering write.
+ * A message is written between begin() and end(); end()
+ * back-patches its length. Nothing hits the socket until
+ * flush() is called, or until the buffer gets full at a
+ * message boundary. Large chunks of bytes are not copied:
+ * they go to the socket as separate segments, so such an
+ * array must not change until the next flush().
+ *
+ * A value of unknown size, e.g. a JSON document, can be
+ * streamed into the message between beginValue() and
+ * endValue(), which back-patches its int32 length. Room for
+ * it is reserved up front, guessed from the previous values.
+ * Values nest a few levels deep, e.g. the elements of an array.
+ */
+public class MessageWriter implements Sink {
+
+    private static final int STRING_CHUNK = 1024;
+    private static final int MAX_VALUE_DEPTH = 4;
+
+    private final GatheringByteChannel channel;
+    private final int bufSize;
+    private final int bigChunkSize;
+    private final ArrayList<ByteBuffer> segments;
+    private ByteBuffer buf;
+    private int segmentStart;
+    private long segmentBytes;
+    private ByteBuffer lenBuf;
+    private int lenPosition;
+    private long lenOffset;
+    private final ByteBuffer[] valueLenBufs;
+    private final int[] valueLenPositions;
+    private final long[] valueLenOffsets;
+    private int valueDepth;
+    private int valueSizeHint;
+    private final OutputStream valueStream;
+    private Charset charset;
+    private long flushCount;
+
+    public MessageWriter(GatheringByteChannel channel, int bufSize) {
+        this.channel = channel;
+        this.bufSize = bufSize;
+        this.bigChunkSize = bufSize / 4;
+        this.segments = new ArrayList<>(4);
+        this.buf = ByteBuffer.allocateDirect(bufSize);
+        this.segmentStart = 0;
+        this.segmentBytes = 0;
+        this.lenPosition = -1;
+        this.valueLenBufs = new ByteBuffer[MAX_VALUE_DEPTH];
+        this.valueLenPositions = new int[MAX_VALUE_DEPTH];
+        this.valueLenOffsets = new long[MAX_VALUE_DEPTH];
+        this.valueDepth = 0;
+        this.valueSizeHint = Const.JSON_ENC_BUF_SIZE;
+        this.valueStream = new ValueStream();
+        this.charset = StandardCharsets.UTF_8;
+    }
+
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    public void setEncoding(String encoding) {
+        charset = Encoding.toCharset(encoding);
+    }
+
+    public MessageWriter begin(char tag) {
+        beginMessage(5);
+        buf.put((byte) tag);
+        return markLength();
+    }
+
+    // Startup-like messages have no tag.
+    public MessageWriter begin() {
+        beginMessage(4);
+        return markLength();
+    }
+
+    private void beginMessage(int size) {
+        if (lenPosition != -1) {
+            throw new PGError("the previous message has not been ended");
+        }
+        if (buf.remaining() < size) {
+            flush();
+        }
+    }
+
+    // The amount of bytes written since the last flush.
+    private long offset() {
+        return segmentBytes + buf.position() - segmentStart;
+    }
+
+    private MessageWriter markLength() {
+        lenBuf = buf;
+        lenPosition = buf.position();
+        lenOffset = offset();
+        buf.putInt(0);
+        return this;
+    }
+
+    public void end() {
+        if (valueDepth != 0) {
+            throw new PGError("the value has not been ended");
+        }
+        long len = offset() - lenOffset;
+        if (len > Integer.MAX_VALUE) {
+            throw new PGError("message is too long: %s byte(s)", len);
+        }
+        lenBuf.putInt(lenPosition, (int) len);
+        lenBuf = null;
+        lenPosition = -1;
+        if (buf.position() >= bufSize) {
+            flush();
+        }
+    }
+
+    // The bytes written into the current message so far.
+    public long getMessageLength() {
+        if (lenPosition == -1) {
+            throw new PGError("no message has been begun");
+        }
+        return offset() - lenOffset;
+    }
+
+    public OutputStream beginValue() {
+        if (lenPosition == -1) {
+            throw new PGError("a value must be written inside a message");
+        }
+        if (valueDepth == MAX_VALUE_DEPTH) {
+            throw new PGError("values are nested too deep: %s", valueDepth);
+        }
+        // The hint is for the outer values only.
+        ensure(valueDepth == 0 ? 4 + valueSizeHint : 4);
+        int depth = valueDepth++;
+        valueLenBufs[depth] = buf;
+        valueLenPositions[depth] = buf.position();
+        buf.putInt(0);
+        valueLenOffsets[depth] = offset();
+        return valueStream;
+    }
+
+    public int endValue() {
+        if (valueDepth == 0) {
+            throw new PGError("no value has been begun");
+        }
+        int depth = --valueDepth;
+        long len = offset() - valueLenOffsets[depth];
+        if (len > Integer.MAX_VALUE) {
+            throw new PGError("value is too long: %s byte(s)", len);
+        }
+        valueLenBufs[depth].putInt(valueLenPositions[depth], (int) len);
+        valueLenBufs[depth] = null;
+        if (depth == 0) {
+            // Jump up to a larger value at once, go down slowly.
+            valueSizeHint = Math.min(
+                    Math.max((int) len, valueSizeHint - (valueSizeHint >> 3)),
+                    bufSize * 4
+            );
+        }
+        return (int) len;
+    }
+
+    // Copies whatever is written; the caller may reuse its arrays.
+    private class ValueStream extends OutputStream {
+
+        public void write(int b) {
+            ensure(1);
+            buf.put((byte) b);
+        }
+
+        public void write(byte[] bytes, int offset, int len) {
+            ensure(len);
+            buf.put(bytes, offset, len);
+        }
+    }
+
+    private void ensure(int size) {
+        if (buf.remaining() >= size) {
+            return;
+        }
+
+        // Keep the pending part of the buffer only; the
+        // segments closed before still refer to the old one.
+        int len = buf.position() - segmentStart;
+        int capacity = Math.max(buf.capacity() * 2, len + size);
+        ByteBuffer bufNew = ByteBuffer.allocateDirect(capacity);
+        bufNew.put(buf.slice(segmentStart, len));
+        if (lenBuf == buf && lenPosition >= segmentStart) {
+            lenBuf = bufNew;
+            lenPosition -= segmentStart;
+        }
+        for (int i = 0; i < valueDepth; i++) {
+            if (valueLenBufs[i] == buf && valueLenPositions[i] >= segmentStart) {
+                valueLenBufs[i] = bufNew;
+                valueLenPositions[i] -= segmentStart;
+            }
+        }
+        segmentStart = 0;
+        buf = bufNew;
+    }
+
+    public MessageWriter putByte(byte b) {
+        ensure(1);
+        buf.put(b);
+        return this;
+    }
+
+    public MessageWriter putShort(short s) {
+        ensure(2);
+        buf.putShort(s);
+        return this;
+    }
+
+    public MessageWriter putInt(int i) {
+        ensure(4);
+        buf.putInt(i);
+        return this;
+    }
+
+    public MessageWriter putLong(long l) {
+        ensure(8);
+        buf.putLong(l);
+        return this;
+    }
+
+    public MessageWriter putFloat(float f) {
+        ensure(4);
+        buf.putFloat(f);
+        return this;
+    }
+
+    public MessageWriter putDouble(double d) {
+        ensure(8);
+        buf.putDouble(d);
+        return this;
+    }
+
+    public MessageWriter putUnsignedShort(int i) {
+        return putShort((short) i);
+    }
+
+    public MessageWriter putUnsignedInteger(long l) {
+        return putInt((int) l);
+    }
+
+    public MessageWriter putBytes(byte[] bytes) {
+        return putBytes(bytes, 0, bytes.length);
+    }
+
+    public MessageWriter putBytes(byte[] bytes, int offset, int len) {
+        if (len >= bigChunkSize) {
+            closeSegment();
+            segments.add(ByteBuffer.wrap(bytes, offset, len));
+            segmentBytes += len;
+        }
+        else {
+            ensure(len);
+            buf.put(bytes, offset, len);
+        }
+        return this;
+    }
+
+    public MessageWriter putString(String s) {
+        int len = s.length();
+        if (charset != StandardCharsets.UTF_8) {
+            byte[] bytes = s.getBytes(charset);
+            ensure(bytes.length);
+            buf.put(bytes);
+            return this;
+        }
+        int i = 0;
+        while (i < len) {
+            int end = Math.min(len, i + STRING_CHUNK);
+            // 3 bytes per char at most, and 4 for a surrogate
+            // pair that may step over the end of the chunk.
+            ensure((end - i) * 3 + 1);
+            i = putStringChunk(s, i, end, len);
+        }
+        return this;
+    }
+
+    private int putStringChunk(String s, int start, int end, int len) {
+        int i = start;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buf.put((byte) c);
+            }
+            else if (c < 0x800) {
+                buf.put((byte) (0xC0 | (c >> 6)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            }
+            else if (Character.isHighSurrogate(c)
+                     && i + 1 < len
+                     && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf.put((byte) (0xF0 | (cp >> 18)));
+                buf.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buf.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (cp & 0x3F)));
+            }
+            else if (Character.isSurrogate(c)) {
+                buf.put((byte) '?');
+            }
+            else {
+                buf.put((byte) (0xE0 | (c >> 12)));
+                buf.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        return i;
+    }
+
+    public MessageWriter putCString(String s) {
+        putString(s);
+        return putByte((byte) 0);
+    }
+
+    private void closeSegment() {
+        int pos = buf.position();
+        if (pos > segmentStart) {
+            segments.add(buf.slice(segmentStart, pos - segmentStart));
+            segmentBytes += pos - segmentStart;
+            segmentStart = pos;
+        }
+    }
+
+    // Drops everything that has not been sent yet, including
+    // an unfinished message, e.g. when a parameter could not
+    // be encoded in the middle of Bind.
+    public void reset() {
+        segments.clear();
+        segmentStart = 0;
+        segmentBytes = 0;
+        lenBuf = null;
+        lenPosition = -1;
+        Arrays.fill(valueLenBufs, null);
+        valueDepth = 0;
+        buf.clear();
+    }
+
+    public void flush() {
+        if (lenPosition != -1) {
+            throw new PGError("cannot flush a message that has not been ended");
+        }
+
+        closeSegment();
+        if (segments.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer[] bufs = segments.toArray(new ByteBuffer[0]);
+        long remaining = segmentBytes;
+
+        try {
+            while (remaining > 0) {
+                remaining -= channel.write(bufs);
+            }
+        }
+        catch (IOException e) {
+            throw new PGError(e, "could not write messages to the socket");
+        }
+        finally {
+            flushCount++;
+            segments.clear();
+            segmentStart = 0;
+            segmentBytes = 0;
+            if (buf.capacity() > bufSize * 4) {
+                buf = ByteBuffer.allocateDirect(bufSize);
+            }
+            else {
+                buf.clear();
+            }
+        }
+    }
+
+}
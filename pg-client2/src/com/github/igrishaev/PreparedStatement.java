@@ -1,8 +1,16 @@
 package com.github.igrishaev;
 
+import com.github.igrishaev.codec.IEncoder;
+import com.github.igrishaev.enums.Format;
 import com.github.igrishaev.msg.ParameterDescription;
 import com.github.igrishaev.msg.Parse;
+import com.github.igrishaev.msg.RowDescription;
 
+// The row description is null for a statement with no rows.
+// The encoders, one per parameter, write them into Bind.
 public record PreparedStatement(
         Parse parse,
-        ParameterDescription parameterDescription) {}
+        ParameterDescription parameterDescription,
+        RowDescription rowDescription,
+        Format[] paramsFormats,
+        IEncoder[] encoders) {}
@@ -0,0 +1,75 @@
+package com.github.igrishaev;
+
+import com.github.igrishaev.enums.OID;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A per-connection LRU cache of prepared statements
+ * keyed by SQL and parameter OIDs. The cache knows
+ * nothing about the server: closing the statements
+ * it evicts is up to the connection.
+ */
+public class StatementCache {
+
+    private record Key (String sql, List<OID> OIDs) {}
+
+    private final int size;
+    private final LinkedHashMap<Key, PreparedStatement> statements;
+    private long hits;
+    private long misses;
+
+    public StatementCache(int size) {
+        this.size = size;
+        this.statements = new LinkedHashMap<>(size, 0.75f, true);
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    public PreparedStatement get(String sql, List<OID> OIDs) {
+        PreparedStatement ps = statements.get(new Key(sql, OIDs));
+        if (ps == null) {
+            misses++;
+        }
+        else {
+            hits++;
+        }
+        return ps;
+    }
+
+    public void put(String sql, List<OID> OIDs, PreparedStatement ps) {
+        statements.put(new Key(sql, OIDs), ps);
+    }
+
+    public PreparedStatement remove(String sql, List<OID> OIDs) {
+        return statements.remove(new Key(sql, OIDs));
+    }
+
+    // Removes the least recently used statement if there
+    // is no room for a new one, or returns null.
+    public PreparedStatement evict() {
+        if (statements.size() < size) {
+            return null;
+        }
+        Iterator<Map.Entry<Key, PreparedStatement>> iter = statements.entrySet().iterator();
+        PreparedStatement ps = iter.next().getValue();
+        iter.remove();
+        return ps;
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+}
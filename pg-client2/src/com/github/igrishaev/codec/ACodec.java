@@ -3,49 +3,94 @@ package com.github.igrishaev.codec;
 import com.github.igrishaev.PGError;
 import com.github.igrishaev.enums.OID;
 
-import java.io.UnsupportedEncodingException;
+import com.github.igrishaev.util.Encoding;
+import com.github.igrishaev.util.JSON;
+
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 
 abstract class ACodec {
 
     String encoding = "UTF-8";
+    Charset charset = StandardCharsets.UTF_8;
     String dateStyle = null;
     String timeZone = null;
+    int dateFormat = DateTimeTxt.ISO;
+    boolean dayFirst = false;
+    ZoneId zoneId = ZoneOffset.UTC;
+
+    // The settings, but not the state of a subclass.
+    void copySettings (ACodec other) {
+        this.encoding = other.encoding;
+        this.charset = other.charset;
+        this.dateStyle = other.dateStyle;
+        this.timeZone = other.timeZone;
+        this.dateFormat = other.dateFormat;
+        this.dayFirst = other.dayFirst;
+        this.zoneId = other.zoneId;
+    }
 
+    // Resolved once here rather than by name on every value.
     public void setEncoding (String encoding) {
         this.encoding = encoding;
+        this.charset = Encoding.toCharset(encoding);
     }
 
     public void setDateStyle (String dateStyle) {
         this.dateStyle = dateStyle;
+        this.dateFormat = DateTimeTxt.parseDateFormat(dateStyle);
+        this.dayFirst = DateTimeTxt.parseDayFirst(dateStyle);
     }
 
     public void setTimeZone (String timeZone) {
         this.timeZone = timeZone;
+        this.zoneId = DateTimeTxt.parseZoneId(timeZone);
     }
 
     public String getString(ByteBuffer buf) {
         int offset = buf.arrayOffset() + buf.position();
-        try {
-            return new String(buf.array(), offset, buf.limit(), encoding);
-        }
-        catch (UnsupportedEncodingException e) {
-            throw new PGError(e, "could not get a string");
-        }
+        return new String(buf.array(), offset, buf.remaining(), charset);
     }
 
     public static byte[] getBytes(ByteBuffer buf) {
-        int size = buf.limit();
+        int size = buf.remaining();
         byte[] bytes = new byte[size];
         buf.get(bytes);
         return bytes;
     }
     public byte[] getBytes (String string) {
-        try {
-            return string.getBytes(encoding);
-        } catch (UnsupportedEncodingException e) {
-            throw new PGError(e, "could not get bytes from a string");
+        return string.getBytes(charset);
+    }
+
+    // Jackson writes UTF-8 only.
+    boolean isUTF8 () {
+        return charset.equals(StandardCharsets.UTF_8);
+    }
+
+    // The length of a number, a date and so on is the
+    // length of the string: they are ASCII in any encoding.
+    static void putAscii (Sink out, String s) {
+        out.putInt(s.length());
+        out.putString(s);
+    }
+
+    static void putString (Sink out, String s) {
+        out.beginValue();
+        out.putString(s);
+        out.endValue();
+    }
+
+    static void putJSON (Sink out, Object value, boolean isJSONB) {
+        OutputStream stream = out.beginValue();
+        if (isJSONB) {
+            out.putByte((byte) 1);
         }
+        JSON.writeValue(stream, value);
+        out.endValue();
     }
 
     public static String txtEncodingError(Object x, OID oid) {
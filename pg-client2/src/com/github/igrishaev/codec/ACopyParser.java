@@ -0,0 +1,83 @@
+package com.github.igrishaev.codec;
+
+import com.github.igrishaev.PGError;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/*
+ * Splits COPY TO STDOUT data into rows, whatever the CopyData
+ * boundaries are. The server sends a row per message, so
+ * a chunk is parsed right where it is; only an incomplete
+ * tail is copied and kept until the next chunk.
+ */
+public abstract class ACopyParser {
+
+    protected final IDecoder[] decoders;
+    private final Consumer<Object[]> onRow;
+    private ByteBuffer pending;
+
+    protected ACopyParser(IDecoder[] decoders, Consumer<Object[]> onRow) {
+        this.decoders = decoders;
+        this.onRow = onRow;
+    }
+
+    // Parses an item (a row, a header...) at the position and
+    // moves past it; false when the item is not complete.
+    protected abstract boolean parse(ByteBuffer buf);
+
+    protected void emit(Object[] values) {
+        onRow.accept(values);
+    }
+
+    protected PGError wrongFieldCount(int count) {
+        return new PGError("wrong number of COPY fields: %s, expected %s", count, decoders.length);
+    }
+
+    public void feed(byte[] bytes, int offset, int len) {
+        ByteBuffer buf;
+        if (pending == null) {
+            buf = ByteBuffer.wrap(bytes, offset, len);
+        }
+        else {
+            if (pending.capacity() - pending.limit() < len) {
+                ByteBuffer bufNew = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.remaining() + len));
+                bufNew.put(pending);
+                bufNew.flip();
+                pending = bufNew;
+            }
+            int limit = pending.limit();
+            pending.limit(limit + len);
+            pending.put(limit, bytes, offset, len);
+            buf = pending;
+        }
+
+        while (buf.hasRemaining()) {
+            int start = buf.position();
+            if (!parse(buf)) {
+                buf.position(start);
+                break;
+            }
+        }
+
+        if (!buf.hasRemaining()) {
+            pending = null;
+        }
+        else if (buf == pending) {
+            pending.compact();
+            pending.flip();
+        }
+        else {
+            pending = ByteBuffer.allocate(Math.max(buf.remaining() * 2, 256));
+            pending.put(buf);
+            pending.flip();
+        }
+    }
+
+    // At CopyDone
+    public void finish() {
+        if (pending != null) {
+            throw new PGError("incomplete COPY data: %s byte(s) left", pending.remaining());
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.github.igrishaev.codec;
+
+import clojure.lang.ITransientCollection;
+import clojure.lang.PersistentVector;
+import com.github.igrishaev.PGError;
+import com.github.igrishaev.enums.OID;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Binary arrays: ndim, a has-nulls flag and the element OID
+ * (int32 each), then size and lower bound for each dimension,
+ * then the elements in row-major order, each prefixed with its
+ * length (-1 for NULL). Decoded into nested vectors; with
+ * primitive arrays on, one-dimensional int4, int8 and float8
+ * arrays with no NULLs become int[], long[] and double[].
+ * Encoded from Java arrays (primitive ones too) and lists,
+ * nested ones for more dimensions, straight into a Sink.
+ */
+public final class ArrayBin {
+
+    private ArrayBin() {}
+
+    public static Object decode(ByteBuffer buf, DecoderBin decoder, boolean primitiveArrays) {
+        int ndim = buf.getInt();
+        int hasNulls = buf.getInt();
+        OID elementOID = OID.ofInt(buf.getInt());
+
+        if (ndim == 0) {
+            return PersistentVector.EMPTY;
+        }
+
+        int[] dims = new int[ndim];
+        for (int i = 0; i < ndim; i++) {
+            dims[i] = buf.getInt();
+            buf.getInt(); // lower bound
+        }
+
+        if (primitiveArrays && ndim == 1 && hasNulls == 0) {
+            int size = dims[0];
+            switch (elementOID) {
+                case INT4: {
+                    int[] result = new int[size];
+                    for (int i = 0; i < size; i++) {
+                        buf.getInt();
+                        result[i] = buf.getInt();
+                    }
+                    return result;
+                }
+                case INT8: {
+                    long[] result = new long[size];
+                    for (int i = 0; i < size; i++) {
+                        buf.getInt();
+                        result[i] = buf.getLong();
+                    }
+                    return result;
+                }
+                case FLOAT8: {
+                    double[] result = new double[size];
+                    for (int i = 0; i < size; i++) {
+                        buf.getInt();
+                        result[i] = buf.getDouble();
+                    }
+                    return result;
+                }
+            }
+        }
+
+        return decodeDim(buf, element -> decoder.decode(element, elementOID), dims, 0);
+    }
+
+    // For arrays of custom types, with the element decoder
+    // resolved by the caller.
+    public static Object decode(ByteBuffer buf, IDecoder elementDecoder) {
+        int ndim = buf.getInt();
+        buf.getInt(); // has nulls
+        buf.getInt(); // element OID
+        if (ndim == 0) {
+            return PersistentVector.EMPTY;
+        }
+        int[] dims = new int[ndim];
+        for (int i = 0; i < ndim; i++) {
+            dims[i] = buf.getInt();
+            buf.getInt(); // lower bound
+        }
+        return decodeDim(buf, elementDecoder, dims, 0);
+    }
+
+    private static Object decodeDim(ByteBuffer buf,
+                                    IDecoder decoder,
+                                    int[] dims,
+                                    int dim) {
+        ITransientCollection result = PersistentVector.EMPTY.asTransient();
+        boolean isLast = dim == dims.length - 1;
+        for (int i = 0; i < dims[dim]; i++) {
+            if (isLast) {
+                int len = buf.getInt();
+                if (len == -1) {
+                    result = result.conj(null);
+                }
+                else {
+                    int pos = buf.position();
+                    ByteBuffer element = buf.slice(pos, len);
+                    buf.position(pos + len);
+                    result = result.conj(decoder.decode(element));
+                }
+            }
+            else {
+                result = result.conj(decodeDim(buf, decoder, dims, dim + 1));
+            }
+        }
+        return result.persistent();
+    }
+
+    static boolean isArray(Object x) {
+        return x instanceof List<?> || (x != null && x.getClass().isArray());
+    }
+
+    private static int length(Object x) {
+        return x instanceof List<?> l ? l.size() : Array.getLength(x);
+    }
+
+    private static Object get(Object x, int i) {
+        return x instanceof List<?> l ? l.get(i) : Array.get(x, i);
+    }
+
+    // Sizes of the dimensions, judged by the first elements.
+    static int[] dimensions(Object x) {
+        ArrayList<Integer> dims = new ArrayList<>(2);
+        Object level = x;
+        while (true) {
+            int len = length(level);
+            dims.add(len);
+            if (len == 0) {
+                break;
+            }
+            Object first = get(level, 0);
+            if (first == null || !isArray(first) || first instanceof byte[]) {
+                break;
+            }
+            level = first;
+        }
+        int[] result = new int[dims.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = dims.get(i);
+        }
+        return result;
+    }
+
+    // Walks the elements in row-major order; fails on a ragged array.
+    static void flatten(Object x, int[] dims, int dim, List<Object> acc) {
+        int len = length(x);
+        if (len != dims[dim]) {
+            throw new PGError("multidimensional arrays must have sub-arrays with matching dimensions");
+        }
+        boolean isLast = dim == dims.length - 1;
+        for (int i = 0; i < len; i++) {
+            Object element = get(x, i);
+            if (isLast) {
+                acc.add(element);
+            }
+            else if (element != null && isArray(element)) {
+                flatten(element, dims, dim + 1, acc);
+            }
+            else {
+                throw new PGError("multidimensional arrays must have sub-arrays with matching dimensions");
+            }
+        }
+    }
+
+    private static void putHeader(Sink out, int[] dims, boolean hasNulls, OID elementOID) {
+        out.putInt(dims.length);
+        out.putInt(hasNulls ? 1 : 0);
+        out.putInt(elementOID.toInt());
+        for (int dim: dims) {
+            out.putInt(dim);
+            out.putInt(1);
+        }
+    }
+
+    public static void encode(Object x, OID oid, EncoderBin encoder, Sink out) {
+        OID elementOID = oid.elementOID();
+        if (elementOID == null) {
+            ACodec.binEncodingError(x, oid);
+        }
+
+        // The fast paths: the length is known up front.
+        switch (x) {
+            case long[] arr when elementOID == OID.INT8 -> {
+                out.putInt(20 + arr.length * 12);
+                putHeader(out, new int[] {arr.length}, false, elementOID);
+                for (long l: arr) {
+                    out.putInt(8).putLong(l);
+                }
+                return;
+            }
+            case int[] arr when elementOID == OID.INT4 -> {
+                out.putInt(20 + arr.length * 8);
+                putHeader(out, new int[] {arr.length}, false, elementOID);
+                for (int i: arr) {
+                    out.putInt(4).putInt(i);
+                }
+                return;
+            }
+            case double[] arr when elementOID == OID.FLOAT8 -> {
+                out.putInt(20 + arr.length * 12);
+                putHeader(out, new int[] {arr.length}, false, elementOID);
+                for (double d: arr) {
+                    out.putInt(8).putDouble(d);
+                }
+                return;
+            }
+            default -> {}
+        }
+
+        int[] dims = dimensions(x);
+        if (dims[0] == 0) {
+            out.putInt(12).putInt(0).putInt(0).putInt(elementOID.toInt());
+            return;
+        }
+
+        ArrayList<Object> elements = new ArrayList<>();
+        flatten(x, dims, 0, elements);
+        boolean hasNulls = elements.contains(null);
+
+        // Each element goes with its own length prefix.
+        out.beginValue();
+        putHeader(out, dims, hasNulls, elementOID);
+        for (Object element: elements) {
+            if (element == null) {
+                out.putInt(-1);
+            }
+            else {
+                encoder.encode(element, elementOID, out);
+            }
+        }
+        out.endValue();
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.igrishaev.codec;
+
+import com.github.igrishaev.enums.OID;
+
+import java.util.ArrayList;
+
+/*
+ * Text arrays: {1,2,3}, or {{1,2},{3,4}} for two dimensions.
+ * Elements are encoded as usual, then quoted and escaped;
+ * NULL stands for a null. Numeric primitive arrays are
+ * written as they are.
+ */
+public final class ArrayTxt {
+
+    private ArrayTxt() {}
+
+    private static void quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    public static String encode(Object x, OID oid, EncoderTxt encoder) {
+        OID elementOID = oid.elementOID();
+        if (elementOID == null) {
+            return ACodec.txtEncodingError(x, oid);
+        }
+
+        switch (x) {
+            case long[] arr when elementOID == OID.INT8 -> {
+                StringBuilder sb = new StringBuilder(arr.length * 8 + 2).append('{');
+                for (int i = 0; i < arr.length; i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    sb.append(arr[i]);
+                }
+                return sb.append('}').toString();
+            }
+            case int[] arr when elementOID == OID.INT4 -> {
+                StringBuilder sb = new StringBuilder(arr.length * 6 + 2).append('{');
+                for (int i = 0; i < arr.length; i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    sb.append(arr[i]);
+                }
+                return sb.append('}').toString();
+            }
+            default -> {}
+        }
+
+        int[] dims = ArrayBin.dimensions(x);
+        ArrayList<Object> elements = new ArrayList<>();
+        if (dims[0] > 0) {
+            ArrayBin.flatten(x, dims, 0, elements);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        int[] counters = new int[dims.length];
+        for (int i = 0; i < dims.length; i++) {
+            sb.append('{');
+        }
+        for (int i = 0; i < elements.size(); i++) {
+            Object element = elements.get(i);
+            if (element == null) {
+                sb.append("NULL");
+            }
+            else {
+                quote(sb, encoder.encode(element, elementOID));
+            }
+            // Close the finished dimensions, open the next ones.
+            int dim = dims.length - 1;
+            counters[dim]++;
+            int closed = 0;
+            while (dim > 0 && counters[dim] == dims[dim]) {
+                counters[dim] = 0;
+                counters[dim - 1]++;
+                dim--;
+                closed++;
+            }
+            if (i < elements.size() - 1) {
+                sb.append("}".repeat(closed)).append(',').append("{".repeat(closed));
+            }
+        }
+        for (int i = 0; i < dims.length; i++) {
+            sb.append('}');
+        }
+        return sb.toString();
+    }
+}
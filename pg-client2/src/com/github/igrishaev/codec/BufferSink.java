@@ -0,0 +1,113 @@
+package com.github.igrishaev.codec;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/*
+ * A Sink into a growing heap array, for the encoders called
+ * on their own rather than into a message. Values nest as in
+ * MessageWriter.
+ */
+final class BufferSink extends OutputStream implements Sink {
+
+    private final Charset charset;
+    private byte[] bytes;
+    private int size;
+    private int[] valueStarts;
+    private int valueDepth;
+
+    BufferSink(Charset charset) {
+        this.charset = charset;
+        this.bytes = new byte[64];
+        this.valueStarts = new int[4];
+    }
+
+    private void ensure(int len) {
+        if (size + len > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + len));
+        }
+    }
+
+    private void putIntAt(int pos, int i) {
+        bytes[pos] = (byte) (i >>> 24);
+        bytes[pos + 1] = (byte) (i >>> 16);
+        bytes[pos + 2] = (byte) (i >>> 8);
+        bytes[pos + 3] = (byte) i;
+    }
+
+    public Sink putByte(byte b) {
+        ensure(1);
+        bytes[size++] = b;
+        return this;
+    }
+
+    public Sink putShort(short s) {
+        ensure(2);
+        bytes[size++] = (byte) (s >>> 8);
+        bytes[size++] = (byte) s;
+        return this;
+    }
+
+    public Sink putInt(int i) {
+        ensure(4);
+        putIntAt(size, i);
+        size += 4;
+        return this;
+    }
+
+    public Sink putLong(long l) {
+        putInt((int) (l >>> 32));
+        return putInt((int) l);
+    }
+
+    public Sink putFloat(float f) {
+        return putInt(Float.floatToIntBits(f));
+    }
+
+    public Sink putDouble(double d) {
+        return putLong(Double.doubleToLongBits(d));
+    }
+
+    public Sink putBytes(byte[] src, int offset, int len) {
+        ensure(len);
+        System.arraycopy(src, offset, bytes, size, len);
+        size += len;
+        return this;
+    }
+
+    public Sink putString(String s) {
+        byte[] src = s.getBytes(charset);
+        return putBytes(src, 0, src.length);
+    }
+
+    public OutputStream beginValue() {
+        if (valueDepth == valueStarts.length) {
+            valueStarts = Arrays.copyOf(valueStarts, valueDepth * 2);
+        }
+        putInt(0);
+        valueStarts[valueDepth++] = size;
+        return this;
+    }
+
+    public int endValue() {
+        int start = valueStarts[--valueDepth];
+        int len = size - start;
+        putIntAt(start - 4, len);
+        return len;
+    }
+
+    public void write(int b) {
+        putByte((byte) b);
+    }
+
+    public void write(byte[] src, int offset, int len) {
+        putBytes(src, offset, len);
+    }
+
+    // The only value written, with no length prefix.
+    ByteBuffer toValue() {
+        return ByteBuffer.wrap(Arrays.copyOfRange(bytes, 4, size));
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.igrishaev.codec;
+
+import com.github.igrishaev.PGError;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Binary COPY: the PGCOPY signature with zero flags and no
+ * header extension, then a tuple per row: an int16 count of
+ * fields, each one encoded as a binary parameter is (an int32
+ * length, -1 for NULL, and the bytes), and int16 -1 at the end.
+ */
+public final class CopyBin {
+
+    private static final byte[] HEADER = {
+            'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0,
+            0, 0, 0, 0, // flags
+            0, 0, 0, 0  // header extension length
+    };
+
+    private CopyBin() {}
+
+    public static void putHeader(Sink out) {
+        out.putBytes(HEADER, 0, HEADER.length);
+    }
+
+    public static void putTrailer(Sink out) {
+        out.putShort((short) -1);
+    }
+
+    private static void putValue(Sink out, Object x, IEncoder encoder) {
+        if (x == null) {
+            out.putInt(-1);
+        }
+        else {
+            encoder.encode(x, out);
+        }
+    }
+
+    public static void putRow(Sink out, List<?> row, IEncoder[] encoders) {
+        if (row.size() != encoders.length) {
+            throw new PGError("wrong COPY row size: %s, expected %s, row: %s",
+                    row.size(), encoders.length, row);
+        }
+        out.putShort((short) encoders.length);
+        int i = 0;
+        for (Object x: row) {
+            putValue(out, x, encoders[i++]);
+        }
+    }
+
+    // A missing key goes as NULL.
+    public static void putRow(Sink out, Map<?,?> row, Object[] keys, IEncoder[] encoders) {
+        out.putShort((short) encoders.length);
+        for (int i = 0; i < keys.length; i++) {
+            putValue(out, row.get(keys[i]), encoders[i]);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.igrishaev.codec;
+
+import com.github.igrishaev.PGError;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/*
+ * Binary COPY data (see CopyBin): the header first, then
+ * tuples decoded with binary decoders, then the trailer.
+ * A tuple is checked to be complete before any decoding.
+ */
+public class CopyBinParser extends ACopyParser {
+
+    private static final int HEADER_SIZE = 19;
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    private boolean isHeaderRead;
+    private boolean isTrailerRead;
+
+    public CopyBinParser(IDecoder[] decoders, Consumer<Object[]> onRow) {
+        super(decoders, onRow);
+    }
+
+    protected boolean parse(ByteBuffer buf) {
+        int pos = buf.position();
+        int limit = buf.limit();
+
+        if (!isHeaderRead) {
+            if (limit - pos < HEADER_SIZE) {
+                return false;
+            }
+            for (int i = 0; i < SIGNATURE.length; i++) {
+                if (buf.get(pos + i) != SIGNATURE[i]) {
+                    throw new PGError("wrong binary COPY signature");
+                }
+            }
+            int extLen = buf.getInt(pos + 15);
+            if (limit - pos - HEADER_SIZE < extLen) {
+                return false;
+            }
+            buf.position(pos + HEADER_SIZE + extLen);
+            isHeaderRead = true;
+            return true;
+        }
+
+        if (isTrailerRead) {
+            throw new PGError("binary COPY data after the trailer");
+        }
+        if (limit - pos < 2) {
+            return false;
+        }
+        short count = buf.getShort(pos);
+        if (count == -1) {
+            buf.position(pos + 2);
+            isTrailerRead = true;
+            return true;
+        }
+        if (count != decoders.length) {
+            throw wrongFieldCount(count);
+        }
+
+        int p = pos + 2;
+        for (int i = 0; i < count; i++) {
+            if (limit - p < 4) {
+                return false;
+            }
+            int len = buf.getInt(p);
+            p += 4;
+            if (len > 0) {
+                if (limit - p < len) {
+                    return false;
+                }
+                p += len;
+            }
+        }
+
+        Object[] values = new Object[count];
+        p = pos + 2;
+        for (int i = 0; i < count; i++) {
+            int len = buf.getInt(p);
+            p += 4;
+            if (len != -1) {
+                values[i] = decoders[i].decode(buf.slice(p, len));
+                p += len;
+            }
+        }
+        buf.position(p);
+        emit(values);
+        return true;
+    }
+}
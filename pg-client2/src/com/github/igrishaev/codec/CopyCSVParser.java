@@ -0,0 +1,116 @@
+package com.github.igrishaev.codec;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/*
+ * CSV COPY data with the defaults: a comma, double quotes,
+ * a doubled quote inside quotes, and an unquoted empty field
+ * for NULL. Fields are decoded with text decoders. The special
+ * characters are ASCII, so are never a part of a multibyte
+ * character in the server-side encodings.
+ */
+public class CopyCSVParser extends ACopyParser {
+
+    private byte[] scratch = new byte[256];
+
+    public CopyCSVParser(IDecoder[] decoders, Consumer<Object[]> onRow) {
+        super(decoders, onRow);
+    }
+
+    protected boolean parse(ByteBuffer buf) {
+        int pos = buf.position();
+        int limit = buf.limit();
+
+        // The end of the line, minding newlines in quotes.
+        boolean inQuotes = false;
+        int end = -1;
+        for (int i = pos; i < limit; i++) {
+            byte b = buf.get(i);
+            if (b == '"') {
+                inQuotes = !inQuotes;
+            }
+            else if (b == '\n' && !inQuotes) {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1) {
+            return false;
+        }
+        buf.position(end + 1);
+
+        int lineEnd = end > pos && buf.get(end - 1) == '\r' ? end - 1 : end;
+        Object[] values = new Object[decoders.length];
+        int i = pos;
+        int field = 0;
+        while (true) {
+            if (field == decoders.length) {
+                throw wrongFieldCount(field + 1);
+            }
+            int next;
+            if (i < lineEnd && buf.get(i) == '"') {
+                next = parseQuoted(buf, i, lineEnd, field, values);
+            }
+            else {
+                next = i;
+                while (next < lineEnd && buf.get(next) != ',') {
+                    next++;
+                }
+                if (next > i) {
+                    values[field] = decoders[field].decode(buf.slice(i, next - i));
+                }
+            }
+            field++;
+            if (next >= lineEnd) {
+                break;
+            }
+            i = next + 1;
+        }
+        if (field != decoders.length) {
+            throw wrongFieldCount(field);
+        }
+        emit(values);
+        return true;
+    }
+
+    // Returns the position after the closing quote.
+    private int parseQuoted(ByteBuffer buf, int start, int lineEnd, int field, Object[] values) {
+        int len = 0;
+        boolean isEscaped = false;
+        int i = start + 1;
+        for (; i < lineEnd; i++) {
+            byte b = buf.get(i);
+            if (b == '"') {
+                if (i + 1 < lineEnd && buf.get(i + 1) == '"') {
+                    isEscaped = true;
+                    i++;
+                }
+                else {
+                    break;
+                }
+            }
+            len++;
+        }
+        ByteBuffer value;
+        if (!isEscaped) {
+            value = buf.slice(start + 1, len);
+        }
+        else {
+            if (scratch.length < len) {
+                scratch = new byte[Math.max(len, scratch.length * 2)];
+            }
+            int n = 0;
+            for (int j = start + 1; j < i; j++) {
+                byte b = buf.get(j);
+                scratch[n++] = b;
+                if (b == '"') {
+                    j++;
+                }
+            }
+            value = ByteBuffer.wrap(scratch, 0, n);
+        }
+        values[field] = decoders[field].decode(value);
+        return i + 1;
+    }
+}
@@ -0,0 +1,146 @@
+package com.github.igrishaev.codec;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/*
+ * Text COPY data with the defaults: a tab between fields, \N
+ * for NULL, a newline at the end of a row, and backslash
+ * escapes: \b \f \n \r \t \v, an octal \ooo, a hex \xhh, and
+ * any other escaped char for itself, e.g. \\. Tabs and newlines
+ * in values are always escaped, so a row is a line. Fields are
+ * decoded with text decoders, in place when there's nothing
+ * to unescape. The special characters are ASCII, so are never
+ * a part of a multibyte character in the server-side encodings.
+ */
+public class CopyTxtParser extends ACopyParser {
+
+    private byte[] scratch = new byte[256];
+
+    public CopyTxtParser(IDecoder[] decoders, Consumer<Object[]> onRow) {
+        super(decoders, onRow);
+    }
+
+    protected boolean parse(ByteBuffer buf) {
+        int pos = buf.position();
+        int limit = buf.limit();
+
+        int end = -1;
+        for (int i = pos; i < limit; i++) {
+            if (buf.get(i) == '\n') {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1) {
+            return false;
+        }
+        buf.position(end + 1);
+
+        Object[] values = new Object[decoders.length];
+        int i = pos;
+        int field = 0;
+        while (true) {
+            if (field == decoders.length) {
+                throw wrongFieldCount(field + 1);
+            }
+            int next = i;
+            boolean isEscaped = false;
+            while (next < end) {
+                byte b = buf.get(next);
+                if (b == '\t') {
+                    break;
+                }
+                if (b == '\\') {
+                    isEscaped = true;
+                    next++;
+                }
+                next++;
+            }
+            next = Math.min(next, end);
+            int len = next - i;
+            if (len == 2 && buf.get(i) == '\\' && buf.get(i + 1) == 'N') {
+                values[field] = null;
+            }
+            else if (isEscaped) {
+                values[field] = decoders[field].decode(unescape(buf, i, next));
+            }
+            else {
+                values[field] = decoders[field].decode(buf.slice(i, len));
+            }
+            field++;
+            if (next >= end) {
+                break;
+            }
+            i = next + 1;
+        }
+        if (field != decoders.length) {
+            throw wrongFieldCount(field);
+        }
+        emit(values);
+        return true;
+    }
+
+    private static int hexDigit(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+
+    // Never longer than the escaped bytes.
+    private ByteBuffer unescape(ByteBuffer buf, int start, int end) {
+        int len = end - start;
+        if (scratch.length < len) {
+            scratch = new byte[Math.max(len, scratch.length * 2)];
+        }
+        int n = 0;
+        int i = start;
+        while (i < end) {
+            byte b = buf.get(i++);
+            if (b != '\\' || i == end) {
+                scratch[n++] = b;
+                continue;
+            }
+            byte c = buf.get(i++);
+            switch (c) {
+                case 'b' -> scratch[n++] = '\b';
+                case 'f' -> scratch[n++] = '\f';
+                case 'n' -> scratch[n++] = '\n';
+                case 'r' -> scratch[n++] = '\r';
+                case 't' -> scratch[n++] = '\t';
+                case 'v' -> scratch[n++] = 0x0B;
+                case 'x' -> {
+                    int value = 0;
+                    int digits = 0;
+                    while (digits < 2 && i < end && hexDigit(buf.get(i)) != -1) {
+                        value = value * 16 + hexDigit(buf.get(i++));
+                        digits++;
+                    }
+                    scratch[n++] = digits == 0 ? (byte) 'x' : (byte) value;
+                }
+                default -> {
+                    if (c >= '0' && c <= '7') {
+                        int value = c - '0';
+                        int digits = 1;
+                        while (digits < 3 && i < end && buf.get(i) >= '0' && buf.get(i) <= '7') {
+                            value = value * 8 + (buf.get(i++) - '0');
+                            digits++;
+                        }
+                        scratch[n++] = (byte) value;
+                    }
+                    else {
+                        scratch[n++] = c;
+                    }
+                }
+            }
+        }
+        return ByteBuffer.wrap(scratch, 0, n);
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.igrishaev.codec;
+
+import com.github.igrishaev.Interval;
+import com.github.igrishaev.PGError;
+
+import java.nio.ByteBuffer;
+import java.time.*;
+import java.time.temporal.ChronoField;
+
+/*
+ * Binary date and time: dates are int32 days, timestamps are
+ * int64 microseconds, both since 2000-01-01. The max and min
+ * values stand for +-infinity and map to the MAX and MIN
+ * constants of java.time. Timestamptz is always in UTC.
+ */
+public final class DateTimeBin {
+
+    private static final long PG_EPOCH_DAYS = LocalDate.of(2000, 1, 1).toEpochDay();
+    private static final long PG_EPOCH_SECONDS = PG_EPOCH_DAYS * 86400;
+    private static final long MICROS = 1000000;
+
+    private DateTimeBin() {}
+
+    public static LocalDate decodeDate(ByteBuffer buf) {
+        int days = buf.getInt();
+        if (days == Integer.MAX_VALUE) {
+            return LocalDate.MAX;
+        }
+        if (days == Integer.MIN_VALUE) {
+            return LocalDate.MIN;
+        }
+        return LocalDate.ofEpochDay(days + PG_EPOCH_DAYS);
+    }
+
+    private static LocalTime toLocalTime(long micros) {
+        // 24:00:00 is a valid time in Postgres
+        if (micros >= 86400 * MICROS) {
+            return LocalTime.MAX;
+        }
+        return LocalTime.ofNanoOfDay(micros * 1000);
+    }
+
+    public static LocalTime decodeTime(ByteBuffer buf) {
+        return toLocalTime(buf.getLong());
+    }
+
+    public static OffsetTime decodeTimeTz(ByteBuffer buf) {
+        long micros = buf.getLong();
+        // seconds west of UTC
+        int offset = buf.getInt();
+        return OffsetTime.of(toLocalTime(micros), ZoneOffset.ofTotalSeconds(-offset));
+    }
+
+    public static LocalDateTime decodeTimestamp(ByteBuffer buf) {
+        long micros = buf.getLong();
+        if (micros == Long.MAX_VALUE) {
+            return LocalDateTime.MAX;
+        }
+        if (micros == Long.MIN_VALUE) {
+            return LocalDateTime.MIN;
+        }
+        long secs = Math.floorDiv(micros, MICROS) + PG_EPOCH_SECONDS;
+        int nanos = (int) Math.floorMod(micros, MICROS) * 1000;
+        return LocalDateTime.ofEpochSecond(secs, nanos, ZoneOffset.UTC);
+    }
+
+    public static OffsetDateTime decodeTimestampTz(ByteBuffer buf) {
+        long micros = buf.getLong();
+        if (micros == Long.MAX_VALUE) {
+            return OffsetDateTime.MAX;
+        }
+        if (micros == Long.MIN_VALUE) {
+            return OffsetDateTime.MIN;
+        }
+        long secs = Math.floorDiv(micros, MICROS) + PG_EPOCH_SECONDS;
+        int nanos = (int) Math.floorMod(micros, MICROS) * 1000;
+        return OffsetDateTime.ofInstant(Instant.ofEpochSecond(secs, nanos), ZoneOffset.UTC);
+    }
+
+    public static Interval decodeInterval(ByteBuffer buf) {
+        long micros = buf.getLong();
+        int days = buf.getInt();
+        int months = buf.getInt();
+        return new Interval(months, days, micros);
+    }
+
+    // The values themselves, for the encoders writing into a Sink.
+    static int toDays(LocalDate date) {
+        if (date.equals(LocalDate.MAX)) {
+            return Integer.MAX_VALUE;
+        }
+        if (date.equals(LocalDate.MIN)) {
+            return Integer.MIN_VALUE;
+        }
+        try {
+            return Math.toIntExact(date.toEpochDay() - PG_EPOCH_DAYS);
+        }
+        catch (ArithmeticException e) {
+            throw new PGError(e, "date out of range: %s", date);
+        }
+    }
+
+    // Java goes further than a long of microseconds.
+    private static long toMicros(long secs, int nanos, Object value) {
+        try {
+            return Math.addExact(Math.multiplyExact(secs - PG_EPOCH_SECONDS, MICROS), nanos / 1000);
+        }
+        catch (ArithmeticException e) {
+            throw new PGError(e, "timestamp out of range: %s", value);
+        }
+    }
+
+    static long toMicros(LocalDateTime dateTime) {
+        if (dateTime.equals(LocalDateTime.MAX)) {
+            return Long.MAX_VALUE;
+        }
+        if (dateTime.equals(LocalDateTime.MIN)) {
+            return Long.MIN_VALUE;
+        }
+        return toMicros(dateTime.toEpochSecond(ZoneOffset.UTC), dateTime.getNano(), dateTime);
+    }
+
+    static long toMicros(OffsetDateTime dateTime) {
+        if (dateTime.equals(OffsetDateTime.MAX)) {
+            return Long.MAX_VALUE;
+        }
+        if (dateTime.equals(OffsetDateTime.MIN)) {
+            return Long.MIN_VALUE;
+        }
+        return toMicros(dateTime.toEpochSecond(), dateTime.getNano(), dateTime);
+    }
+
+    static long toMicros(LocalTime time) {
+        return time.getLong(ChronoField.MICRO_OF_DAY);
+    }
+
+    static long toMicros(Instant instant) {
+        return toMicros(instant.getEpochSecond(), instant.getNano(), instant);
+    }
+}
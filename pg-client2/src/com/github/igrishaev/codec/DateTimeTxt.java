@@ -0,0 +1,521 @@
+package com.github.igrishaev.codec;
+
+import com.github.igrishaev.Interval;
+import com.github.igrishaev.PGError;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+
+/*
+ * A hand-written parser for the text date and time values
+ * the server sends. Reads the bytes in place, no strings
+ * or formatters. Dates and timestamps follow the DateStyle
+ * parameter: the format (ISO, SQL, Postgres, German) and
+ * the order of day and month (MDY, DMY). Non-ISO styles print
+ * a zone abbreviation for timestamptz; as it's always the zone
+ * of the session, the cached ZoneId of TimeZone is used
+ * instead; a TimeZone Java doesn't know (a POSIX string like
+ * EST5EDT,M3.2.0,M11.1.0) fails such values rather than
+ * guessing. Intervals are parsed in the postgres and iso_8601
+ * styles. +-infinity map to the MAX and MIN constants, and
+ * these are encoded back as +-infinity.
+ */
+public final class DateTimeTxt {
+
+    public static final int ISO = 0;
+    public static final int SQL = 1;
+    public static final int POSTGRES = 2;
+    public static final int GERMAN = 3;
+
+    private static final long NANOS_IN_SECOND = 1000000000L;
+    private static final long NANOS_IN_DAY = 86400 * NANOS_IN_SECOND;
+
+    private static final String[] MONTHS = {
+            "Jan", "Feb", "Mar", "Apr", "May", "Jun",
+            "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"
+    };
+
+    private DateTimeTxt() {}
+
+    public static int parseDateFormat(String dateStyle) {
+        String format = dateStyle.split(",")[0].trim();
+        return switch (format) {
+            case "SQL" -> SQL;
+            case "Postgres" -> POSTGRES;
+            case "German" -> GERMAN;
+            default -> ISO;
+        };
+    }
+
+    public static boolean parseDayFirst(String dateStyle) {
+        return dateStyle.contains("DMY");
+    }
+
+    // Null for a zone Java doesn't know.
+    public static ZoneId parseZoneId(String timeZone) {
+        try {
+            return ZoneId.of(timeZone, ZoneId.SHORT_IDS);
+        }
+        catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static PGError error(ByteBuffer buf, String what) {
+        ByteBuffer copy = buf.duplicate().position(0);
+        byte[] bytes = new byte[copy.remaining()];
+        copy.get(bytes);
+        return new PGError("could not parse %s: %s", what, new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private static int peek(ByteBuffer buf) {
+        return buf.hasRemaining() ? buf.get(buf.position()) : -1;
+    }
+
+    private static boolean isDigit(int b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isLetter(int b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    private static void expect(ByteBuffer buf, char c, String what) {
+        if (peek(buf) != c) {
+            throw error(buf, what);
+        }
+        buf.get();
+    }
+
+    private static void expectEnd(ByteBuffer buf, String what) {
+        if (buf.hasRemaining()) {
+            throw error(buf, what);
+        }
+    }
+
+    private static int readInt(ByteBuffer buf, String what) {
+        int n = 0;
+        int digits = 0;
+        while (isDigit(peek(buf))) {
+            n = n * 10 + (buf.get() - '0');
+            digits++;
+        }
+        if (digits == 0) {
+            throw error(buf, what);
+        }
+        return n;
+    }
+
+    private static int readSignedInt(ByteBuffer buf, String what) {
+        int b = peek(buf);
+        if (b == '-') {
+            buf.get();
+            return -readInt(buf, what);
+        }
+        if (b == '+') {
+            buf.get();
+        }
+        return readInt(buf, what);
+    }
+
+    // The digits after a dot as nanoseconds.
+    private static int readNanos(ByteBuffer buf) {
+        int n = 0;
+        int digits = 0;
+        while (isDigit(peek(buf))) {
+            int d = buf.get() - '0';
+            if (digits < 9) {
+                n = n * 10 + d;
+                digits++;
+            }
+        }
+        for (; digits < 9; digits++) {
+            n *= 10;
+        }
+        return n;
+    }
+
+    private static void skipWord(ByteBuffer buf) {
+        while (isLetter(peek(buf))) {
+            buf.get();
+        }
+    }
+
+    private static boolean matches(ByteBuffer buf, String s) {
+        int pos = buf.position();
+        if (buf.limit() - pos < s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (buf.get(pos + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 1 for infinity, -1 for -infinity, 0 otherwise
+    private static int infinity(ByteBuffer buf) {
+        if (buf.remaining() == 8 && matches(buf, "infinity")) {
+            return 1;
+        }
+        if (buf.remaining() == 9 && matches(buf, "-infinity")) {
+            return -1;
+        }
+        return 0;
+    }
+
+    // The other way round: the MAX and MIN constants the decoders
+    // return for +-infinity, or null for a finite value.
+    public static String infinity(Object x) {
+        if (x.equals(LocalDate.MAX) || x.equals(LocalDateTime.MAX) || x.equals(OffsetDateTime.MAX)) {
+            return "infinity";
+        }
+        if (x.equals(LocalDate.MIN) || x.equals(LocalDateTime.MIN) || x.equals(OffsetDateTime.MIN)) {
+            return "-infinity";
+        }
+        return null;
+    }
+
+    private static boolean readBC(ByteBuffer buf) {
+        if (buf.remaining() == 3 && matches(buf, " BC")) {
+            buf.position(buf.limit());
+            return true;
+        }
+        return false;
+    }
+
+    private static int readMonthName(ByteBuffer buf) {
+        for (int i = 0; i < MONTHS.length; i++) {
+            if (matches(buf, MONTHS[i])) {
+                buf.position(buf.position() + 3);
+                return i + 1;
+            }
+        }
+        throw error(buf, "month");
+    }
+
+    // Year, month and day packed into a long.
+    private static long pack(int year, int month, int day) {
+        return ((long) year << 16) | ((long) month << 8) | day;
+    }
+
+    private static LocalDate unpack(long ymd, boolean isBC) {
+        int year = (int) (ymd >> 16);
+        return LocalDate.of(isBC ? 1 - year : year, (int) (ymd >> 8) & 0xFF, (int) ymd & 0xFF);
+    }
+
+    private static long readDate(ByteBuffer buf, int format, boolean dayFirst) {
+        int a, b, year;
+        switch (format) {
+            case SQL:
+                a = readInt(buf, "date");
+                expect(buf, '/', "date");
+                b = readInt(buf, "date");
+                expect(buf, '/', "date");
+                year = readInt(buf, "date");
+                break;
+            case GERMAN:
+                a = readInt(buf, "date");
+                expect(buf, '.', "date");
+                b = readInt(buf, "date");
+                expect(buf, '.', "date");
+                year = readInt(buf, "date");
+                // always day first
+                return pack(year, b, a);
+            case POSTGRES:
+                a = readInt(buf, "date");
+                expect(buf, '-', "date");
+                b = readInt(buf, "date");
+                expect(buf, '-', "date");
+                year = readInt(buf, "date");
+                break;
+            default:
+                year = readInt(buf, "date");
+                expect(buf, '-', "date");
+                int month = readInt(buf, "date");
+                expect(buf, '-', "date");
+                int day = readInt(buf, "date");
+                return pack(year, month, day);
+        }
+        return dayFirst ? pack(year, b, a) : pack(year, a, b);
+    }
+
+    // Nanoseconds of the day.
+    private static long readTime(ByteBuffer buf) {
+        long hours = readInt(buf, "time");
+        expect(buf, ':', "time");
+        long minutes = readInt(buf, "time");
+        expect(buf, ':', "time");
+        long seconds = readInt(buf, "time");
+        long nanos = 0;
+        if (peek(buf) == '.') {
+            buf.get();
+            nanos = readNanos(buf);
+        }
+        return ((hours * 60 + minutes) * 60 + seconds) * NANOS_IN_SECOND + nanos;
+    }
+
+    private static LocalTime toLocalTime(long nanos) {
+        // 24:00:00 is a valid time in Postgres
+        return nanos >= NANOS_IN_DAY ? LocalTime.MAX : LocalTime.ofNanoOfDay(nanos);
+    }
+
+    private static ZoneOffset readOffset(ByteBuffer buf) {
+        int sign = switch (peek(buf)) {
+            case '+' -> 1;
+            case '-' -> -1;
+            default -> throw error(buf, "time zone offset");
+        };
+        buf.get();
+        int seconds = readInt(buf, "time zone offset") * 3600;
+        if (peek(buf) == ':') {
+            buf.get();
+            seconds += readInt(buf, "time zone offset") * 60;
+            if (peek(buf) == ':') {
+                buf.get();
+                seconds += readInt(buf, "time zone offset");
+            }
+        }
+        return ZoneOffset.ofTotalSeconds(sign * seconds);
+    }
+
+    // Skips a zone abbreviation like MSK, or reads a numeric
+    // offset when the zone has no abbreviation.
+    private static ZoneOffset readZone(ByteBuffer buf) {
+        int b = peek(buf);
+        if (b == '+' || b == '-') {
+            return readOffset(buf);
+        }
+        while (buf.hasRemaining() && peek(buf) != ' ') {
+            buf.get();
+        }
+        return null;
+    }
+
+    public static LocalDate parseDate(ByteBuffer buf, int format, boolean dayFirst) {
+        switch (infinity(buf)) {
+            case 1: return LocalDate.MAX;
+            case -1: return LocalDate.MIN;
+        }
+        try {
+            long ymd = readDate(buf, format, dayFirst);
+            boolean isBC = readBC(buf);
+            expectEnd(buf, "date");
+            return unpack(ymd, isBC);
+        }
+        catch (DateTimeException e) {
+            throw error(buf, "date");
+        }
+    }
+
+    public static LocalTime parseTime(ByteBuffer buf) {
+        long nanos = readTime(buf);
+        expectEnd(buf, "time");
+        return toLocalTime(nanos);
+    }
+
+    public static OffsetTime parseTimeTz(ByteBuffer buf) {
+        long nanos = readTime(buf);
+        ZoneOffset offset = readOffset(buf);
+        expectEnd(buf, "time with time zone");
+        return OffsetTime.of(toLocalTime(nanos), offset);
+    }
+
+    // Postgres style: Wed Jan 02 03:04:05.123456 2023 [zone],
+    // or Wed 02 Jan ... for DMY.
+    private static LocalDateTime readPostgresTimestamp(ByteBuffer buf, boolean dayFirst, boolean withZone, ZoneOffset[] zone) {
+        skipWord(buf);
+        expect(buf, ' ', "timestamp");
+        int month, day;
+        if (dayFirst) {
+            day = readInt(buf, "timestamp");
+            expect(buf, ' ', "timestamp");
+            month = readMonthName(buf);
+        }
+        else {
+            month = readMonthName(buf);
+            expect(buf, ' ', "timestamp");
+            day = readInt(buf, "timestamp");
+        }
+        expect(buf, ' ', "timestamp");
+        long nanos = readTime(buf);
+        expect(buf, ' ', "timestamp");
+        int year = readInt(buf, "timestamp");
+        if (withZone) {
+            expect(buf, ' ', "timestamp");
+            zone[0] = readZone(buf);
+        }
+        boolean isBC = readBC(buf);
+        LocalDate date = unpack(pack(year, month, day), isBC);
+        return LocalDateTime.of(date, LocalTime.MIN).plusNanos(nanos);
+    }
+
+    public static LocalDateTime parseTimestamp(ByteBuffer buf, int format, boolean dayFirst) {
+        switch (infinity(buf)) {
+            case 1: return LocalDateTime.MAX;
+            case -1: return LocalDateTime.MIN;
+        }
+        try {
+            LocalDateTime result;
+            if (format == POSTGRES) {
+                result = readPostgresTimestamp(buf, dayFirst, false, null);
+            }
+            else {
+                long ymd = readDate(buf, format, dayFirst);
+                expect(buf, ' ', "timestamp");
+                long nanos = readTime(buf);
+                boolean isBC = readBC(buf);
+                result = LocalDateTime.of(unpack(ymd, isBC), LocalTime.MIN).plusNanos(nanos);
+            }
+            expectEnd(buf, "timestamp");
+            return result;
+        }
+        catch (DateTimeException e) {
+            throw error(buf, "timestamp");
+        }
+    }
+
+    public static OffsetDateTime parseTimestampTz(ByteBuffer buf,
+                                                  int format,
+                                                  boolean dayFirst,
+                                                  ZoneId zoneId,
+                                                  String timeZone) {
+        switch (infinity(buf)) {
+            case 1: return OffsetDateTime.MAX;
+            case -1: return OffsetDateTime.MIN;
+        }
+        try {
+            LocalDateTime dateTime;
+            ZoneOffset offset;
+            if (format == POSTGRES) {
+                ZoneOffset[] zone = new ZoneOffset[1];
+                dateTime = readPostgresTimestamp(buf, dayFirst, true, zone);
+                offset = zone[0];
+            }
+            else {
+                long ymd = readDate(buf, format, dayFirst);
+                expect(buf, ' ', "timestamp with time zone");
+                long nanos = readTime(buf);
+                if (format == ISO) {
+                    offset = readOffset(buf);
+                }
+                else {
+                    expect(buf, ' ', "timestamp with time zone");
+                    offset = readZone(buf);
+                }
+                boolean isBC = readBC(buf);
+                dateTime = LocalDateTime.of(unpack(ymd, isBC), LocalTime.MIN).plusNanos(nanos);
+            }
+            expectEnd(buf, "timestamp with time zone");
+            if (offset == null) {
+                if (zoneId == null) {
+                    throw new PGError("unknown TimeZone: %s, cannot parse a timestamptz in the %s DateStyle;"
+                                      + " set an IANA zone or the ISO DateStyle",
+                                      timeZone,
+                                      format == SQL ? "SQL" : format == POSTGRES ? "Postgres" : "German");
+                }
+                return dateTime.atZone(zoneId).toOffsetDateTime();
+            }
+            return OffsetDateTime.of(dateTime, offset);
+        }
+        catch (DateTimeException e) {
+            throw error(buf, "timestamp with time zone");
+        }
+    }
+
+    // postgres: 1 year 2 mons -3 days +04:05:06.789
+    // iso_8601: P1Y2M-3DT4H5M6.789S
+    public static Interval parseInterval(ByteBuffer buf) {
+        if (peek(buf) == 'P') {
+            return parseIntervalISO(buf);
+        }
+        int months = 0;
+        int days = 0;
+        long micros = 0;
+        while (buf.hasRemaining()) {
+            int b = peek(buf);
+            boolean negative = b == '-';
+            int n = readSignedInt(buf, "interval");
+            if (peek(buf) == ':') {
+                buf.get();
+                long minutes = readInt(buf, "interval");
+                expect(buf, ':', "interval");
+                long seconds = readInt(buf, "interval");
+                long nanos = 0;
+                if (peek(buf) == '.') {
+                    buf.get();
+                    nanos = readNanos(buf);
+                }
+                long total = ((Math.abs((long) n) * 60 + minutes) * 60 + seconds) * 1000000 + nanos / 1000;
+                micros += negative ? -total : total;
+            }
+            else {
+                expect(buf, ' ', "interval");
+                if (matches(buf, "year")) {
+                    months += n * 12;
+                }
+                else if (matches(buf, "mon")) {
+                    months += n;
+                }
+                else if (matches(buf, "day")) {
+                    days += n;
+                }
+                else {
+                    throw error(buf, "interval");
+                }
+                skipWord(buf);
+            }
+            if (peek(buf) == ' ') {
+                buf.get();
+            }
+        }
+        return new Interval(months, days, micros);
+    }
+
+    private static Interval parseIntervalISO(ByteBuffer buf) {
+        buf.get();
+        int months = 0;
+        int days = 0;
+        long micros = 0;
+        boolean isTime = false;
+        while (buf.hasRemaining()) {
+            if (peek(buf) == 'T') {
+                buf.get();
+                isTime = true;
+                continue;
+            }
+            boolean negative = peek(buf) == '-';
+            int n = readSignedInt(buf, "interval");
+            long nanos = 0;
+            if (peek(buf) == '.') {
+                buf.get();
+                nanos = readNanos(buf);
+            }
+            if (!buf.hasRemaining()) {
+                throw error(buf, "interval");
+            }
+            char unit = (char) buf.get();
+            if (isTime) {
+                long frac = (negative ? -nanos : nanos) / 1000;
+                switch (unit) {
+                    case 'H' -> micros += n * 3600000000L;
+                    case 'M' -> micros += n * 60000000L;
+                    case 'S' -> micros += n * 1000000L + frac;
+                    default -> throw error(buf, "interval");
+                }
+            }
+            else {
+                switch (unit) {
+                    case 'Y' -> months += n * 12;
+                    case 'M' -> months += n;
+                    case 'W' -> days += n * 7;
+                    case 'D' -> days += n;
+                    default -> throw error(buf, "interval");
+                }
+            }
+        }
+        return new Interval(months, days, micros);
+    }
+}
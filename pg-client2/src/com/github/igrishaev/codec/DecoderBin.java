@@ -11,6 +11,28 @@ import com.github.igrishaev.util.JSON;
 
 public class DecoderBin extends ACodec {
 
+    // Shared, so that a reader of raw primitives (see Columnar)
+    // can tell the built-in decoders from the registered ones.
+    private static final IDecoder INT2_DECODER = ByteBuffer::getShort;
+    private static final IDecoder INT4_DECODER = ByteBuffer::getInt;
+    private static final IDecoder INT8_DECODER = ByteBuffer::getLong;
+    private static final IDecoder FLOAT4_DECODER = ByteBuffer::getFloat;
+    private static final IDecoder FLOAT8_DECODER = ByteBuffer::getDouble;
+    private static final IDecoder BOOL_DECODER = DecoderBin::decodeBool;
+
+    boolean primitiveArrays = false;
+
+    public void setPrimitiveArrays (boolean primitiveArrays) {
+        this.primitiveArrays = primitiveArrays;
+    }
+
+    public DecoderBin copy() {
+        DecoderBin copy = new DecoderBin();
+        copy.copySettings(this);
+        copy.primitiveArrays = primitiveArrays;
+        return copy;
+    }
+
     public Object decode(ByteBuffer buf, OID oid) {
         return switch (oid) {
             case INT2 -> buf.getShort();
@@ -24,15 +46,60 @@ public class DecoderBin extends ACodec {
             }
             case FLOAT4 -> buf.getFloat();
             case FLOAT8 -> buf.getDouble();
-            case BOOL -> {
-                switch (buf.get()) {
-                    case 0: yield false;
-                    case 1: yield true;
-                    default: throw new PGError("incorrect binary boolean value");
-                }
-            }
+            case BOOL -> decodeBool(buf);
+            case TEXT, VARCHAR, BPCHAR, NAME -> getString(buf);
+            case NUMERIC -> NumericBin.decode(buf);
             case JSON, JSONB -> JSON.readValueBinary(buf);
-            default -> getBytes(buf);
+            case DATE -> DateTimeBin.decodeDate(buf);
+            case TIME -> DateTimeBin.decodeTime(buf);
+            case TIMETZ -> DateTimeBin.decodeTimeTz(buf);
+            case TIMESTAMP -> DateTimeBin.decodeTimestamp(buf);
+            case TIMESTAMPTZ -> DateTimeBin.decodeTimestampTz(buf);
+            case INTERVAL -> DateTimeBin.decodeInterval(buf);
+            default -> oid.elementOID() != null
+                    ? ArrayBin.decode(buf, this, primitiveArrays)
+                    : getBytes(buf);
+        };
+    }
+
+    private static Boolean decodeBool(ByteBuffer buf) {
+        return switch (buf.get()) {
+            case 0 -> false;
+            case 1 -> true;
+            default -> throw new PGError("incorrect binary boolean value");
+        };
+    }
+
+    // Whether decode has more to say than raw bytes.
+    public boolean supports(OID oid) {
+        return switch (oid) {
+            case INT2, INT4, OID, INT8, CHAR, UUID, FLOAT4, FLOAT8, BOOL,
+                    TEXT, VARCHAR, BPCHAR, NAME, NUMERIC, JSON, JSONB,
+                    DATE, TIME, TIMETZ, TIMESTAMP, TIMESTAMPTZ, INTERVAL,
+                    BYTEA -> true;
+            default -> oid.elementOID() != null && supports(oid.elementOID());
+        };
+    }
+
+    // The common types skip the switch above.
+    public IDecoder decoder(OID oid) {
+        return switch (oid) {
+            case INT2, INT4, OID, INT8, FLOAT4, FLOAT8, BOOL -> primitive(oid);
+            case TEXT, VARCHAR, BPCHAR, NAME -> this::getString;
+            default -> buf -> decode(buf, oid);
+        };
+    }
+
+    // The built-in decoder of a primitive type, or null.
+    public static IDecoder primitive(OID oid) {
+        return switch (oid) {
+            case INT2 -> INT2_DECODER;
+            case INT4, OID -> INT4_DECODER;
+            case INT8 -> INT8_DECODER;
+            case FLOAT4 -> FLOAT4_DECODER;
+            case FLOAT8 -> FLOAT8_DECODER;
+            case BOOL -> BOOL_DECODER;
+            case null, default -> null;
         };
     }
 
@@ -1,39 +1,66 @@
 package com.github.igrishaev.codec;
 
-import com.github.igrishaev.PGError;
 import com.github.igrishaev.enums.OID;
 import com.github.igrishaev.util.JSON;
 
 import java.nio.ByteBuffer;
-import java.util.UUID;
 import java.math.BigDecimal;
 
 public class DecoderTxt extends ACodec {
 
+    public DecoderTxt copy() {
+        DecoderTxt copy = new DecoderTxt();
+        copy.copySettings(this);
+        return copy;
+    }
+
     public Object decode(ByteBuffer buf, OID oid) {
 
         return switch (oid) {
 
-            case INT2 -> Short.parseShort(getString(buf));
-            case INT4, OID -> Integer.parseInt(getString(buf));
-            case INT8 -> Long.parseLong(getString(buf));
-            case BYTEA -> buf.array();
-            case CHAR -> buf.getChar();
-            case UUID -> UUID.fromString(getString(buf));
-            case FLOAT4 -> Float.parseFloat(getString(buf));
-            case FLOAT8 -> Double.parseDouble(getString(buf));
-            case NUMERIC -> new BigDecimal(getString(buf));
-            case BOOL -> {
-                byte b = buf.get();
-                yield switch ((char) b) {
-                    case 't' -> true;
-                    case 'f' -> false;
-                    default -> throw new PGError("wrong boolean value: %s", b);
+            case INT2 -> ScalarTxt.parseShort(buf);
+            case INT4 -> ScalarTxt.parseInt(buf);
+            case OID -> ScalarTxt.parseOID(buf);
+            case INT8 -> ScalarTxt.parseLong(buf);
+            case BYTEA -> getBytes(buf);
+            case CHAR -> (char) buf.get();
+            case UUID -> ScalarTxt.parseUUID(buf);
+            case FLOAT4 -> ScalarTxt.parseFloat(buf);
+            case FLOAT8 -> ScalarTxt.parseDouble(buf);
+            case NUMERIC -> {
+                String s = getString(buf);
+                yield switch (s) {
+                    case "NaN" -> Double.NaN;
+                    case "Infinity" -> Double.POSITIVE_INFINITY;
+                    case "-Infinity" -> Double.NEGATIVE_INFINITY;
+                    default -> new BigDecimal(s);
                 };
             }
+            case BOOL -> ScalarTxt.parseBoolean(buf);
             case JSON, JSONB -> JSON.readValue(buf);
+            case DATE -> DateTimeTxt.parseDate(buf, dateFormat, dayFirst);
+            case TIME -> DateTimeTxt.parseTime(buf);
+            case TIMETZ -> DateTimeTxt.parseTimeTz(buf);
+            case TIMESTAMP -> DateTimeTxt.parseTimestamp(buf, dateFormat, dayFirst);
+            case TIMESTAMPTZ -> DateTimeTxt.parseTimestampTz(buf, dateFormat, dayFirst, zoneId, timeZone);
+            case INTERVAL -> DateTimeTxt.parseInterval(buf);
             default -> getString(buf);
         };
     }
 
+    // The common types skip the switch above.
+    public IDecoder decoder(OID oid) {
+        return switch (oid) {
+            case INT2 -> ScalarTxt::parseShort;
+            case INT4 -> ScalarTxt::parseInt;
+            case INT8 -> ScalarTxt::parseLong;
+            case FLOAT4 -> ScalarTxt::parseFloat;
+            case FLOAT8 -> ScalarTxt::parseDouble;
+            case BOOL -> ScalarTxt::parseBoolean;
+            case UUID -> ScalarTxt::parseUUID;
+            case TEXT, VARCHAR, BPCHAR, NAME -> this::getString;
+            default -> buf -> decode(buf, oid);
+        };
+    }
+
 }
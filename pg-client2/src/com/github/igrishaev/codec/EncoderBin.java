@@ -1,190 +1,297 @@
 package com.github.igrishaev.codec;
 
-import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.time.*;
+import java.util.Date;
 import java.util.Map;
 import java.util.UUID;
 
+import clojure.lang.BigInt;
 import clojure.lang.Symbol;
 import com.github.igrishaev.Const;
+import com.github.igrishaev.Interval;
 import com.github.igrishaev.PGError;
 import com.github.igrishaev.enums.OID;
 import com.github.igrishaev.util.JSON;
 
+/*
+ * Binary parameters. Every value is written with its length
+ * prefix straight into a Sink, e.g. the Bind message: numbers,
+ * numerics digit by digit, dates and times, intervals, arrays
+ * element by element. Strings, JSON and arrays of unknown size
+ * are written between beginValue() and endValue(). The
+ * ByteBuffer encode() is for the callers that need a value on
+ * its own; it goes through the same code.
+ */
 public class EncoderBin extends ACodec {
 
     public ByteBuffer encode (Object x, OID oid) {
+        BufferSink out = new BufferSink(charset);
+        encode(x, oid, out);
+        return out.toValue();
+    }
 
-        return switch (x) {
+    private static boolean isText (OID oid) {
+        return oid == OID.TEXT || oid == OID.VARCHAR;
+    }
 
-            case Symbol s -> switch (oid) {
-                case TEXT, VARCHAR -> {
-                    byte[] bytes = getBytes(s.toString());
-                    yield ByteBuffer.wrap(bytes);
-                }
-                default -> binEncodingError(x, oid);
-            };
+    private static void putInteger (Sink out, long l, Object x, OID oid) {
+        switch (oid) {
+            case INT2 -> out.putInt(2).putShort((short) l);
+            case INT4 -> out.putInt(4).putInt((int) l);
+            case INT8 -> out.putInt(8).putLong(l);
+            case NUMERIC -> NumericBin.encode(l, out);
+            default -> binEncodingError(x, oid);
+        }
+    }
+
+    private static void putFloat4 (Sink out, double d) {
+        float f = (float) d;
+        if (Float.isInfinite(f)) {
+            throw new PGError("double->float coercion let to an infinite value: %s", d);
+        }
+        if (Float.isNaN(f)) {
+            throw new PGError("double->float coercion let to an NAN value: %s", d);
+        }
+        out.putInt(4).putFloat(f);
+    }
+
+    private static short toShortExact (long l) {
+        if ((short) l != l) {
+            throw new ArithmeticException("short overflow");
+        }
+        return (short) l;
+    }
+
+    // Jackson writes UTF-8 only.
+    private void putJSONValue (Sink out, Object value, boolean isJSONB) {
+        if (isUTF8()) {
+            putJSON(out, value, isJSONB);
+        }
+        else {
+            StringWriter writer = new StringWriter(Const.JSON_ENC_BUF_SIZE);
+            JSON.writeValue(writer, value);
+            out.beginValue();
+            if (isJSONB) {
+                out.putByte((byte) 1);
+            }
+            out.putString(writer.toString());
+            out.endValue();
+        }
+    }
+
+    private static void putMicros (Sink out, long micros) {
+        out.putInt(8).putLong(micros);
+    }
+
+    /*
+     * Writes the value with its length prefix.
+     */
+    public void encode (Object x, OID oid, Sink out) {
+        switch (x) {
+
+            case Long l -> putInteger(out, l, x, oid);
+
+            case Integer i -> putInteger(out, i, x, oid);
+
+            case Short s -> putInteger(out, s, x, oid);
 
-            case String s -> switch (oid) {
-                case TEXT, VARCHAR -> {
-                    byte[] bytes = getBytes(s);
-                    yield ByteBuffer.wrap(bytes);
+            case String s when isText(oid) -> putString(out, s);
+
+            case Symbol s when isText(oid) -> putString(out, s.toString());
+
+            case Character c when isText(oid) -> putString(out, c.toString());
+
+            case Boolean b when oid == OID.BOOL -> out.putInt(1).putByte(b ? (byte) 1 : (byte) 0);
+
+            case UUID u -> {
+                switch (oid) {
+                    case UUID -> out.putInt(16)
+                            .putLong(u.getMostSignificantBits())
+                            .putLong(u.getLeastSignificantBits());
+                    case TEXT, VARCHAR -> putAscii(out, u.toString());
+                    default -> binEncodingError(x, oid);
                 }
-                default -> binEncodingError(x, oid);
-            };
+            }
 
-            case Character c -> switch (oid) {
-                case TEXT, VARCHAR -> {
-                    ByteBuffer buf = ByteBuffer.allocate(2);
-                    buf.putChar(c);
-                    yield buf;
+            case Double d -> {
+                switch (oid) {
+                    case FLOAT8 -> out.putInt(8).putDouble(d);
+                    case FLOAT4 -> putFloat4(out, d);
+                    case NUMERIC -> NumericBin.encode(d, out);
+                    default -> binEncodingError(x, oid);
                 }
-                default -> binEncodingError(x, oid);
-            };
+            }
 
-            case Short s -> switch (oid) {
-                case INT2 -> {
-                    ByteBuffer buf = ByteBuffer.allocate(2);
-                    buf.putShort(s);
-                    yield buf;
+            case Float f -> {
+                switch (oid) {
+                    case FLOAT4 -> out.putInt(4).putFloat(f);
+                    case FLOAT8 -> out.putInt(8).putDouble(f);
+                    case NUMERIC -> NumericBin.encode(f.doubleValue(), out);
+                    default -> binEncodingError(x, oid);
                 }
-                case INT4 -> {
-                    ByteBuffer buf = ByteBuffer.allocate(4);
-                    buf.putInt(s);
-                    yield buf;
+            }
+
+            case JSON.Wrapper w -> {
+                switch (oid) {
+                    case JSON, JSONB -> putJSONValue(out, w.value(), oid == OID.JSONB);
+                    default -> binEncodingError(w.value(), oid);
                 }
-                case INT8 -> {
-                    ByteBuffer buf = ByteBuffer.allocate(8);
-                    buf.putLong(s);
-                    yield buf;
+            }
+
+            case Map<?,?> m -> {
+                switch (oid) {
+                    case JSON, JSONB -> putJSONValue(out, m, oid == OID.JSONB);
+                    default -> binEncodingError(x, oid);
                 }
-                default -> binEncodingError(x, oid);
-            };
+            }
 
-            case Integer i -> switch (oid) {
-                case INT2 -> {
-                    ByteBuffer buf = ByteBuffer.allocate(2);
-                    buf.putShort(i.shortValue());
-                    yield buf;
+            case BigDecimal bd -> {
+                switch (oid) {
+                    case NUMERIC -> NumericBin.encode(bd, out);
+                    case INT2 -> out.putInt(2).putShort(bd.shortValueExact());
+                    case INT4 -> out.putInt(4).putInt(bd.intValueExact());
+                    case INT8 -> out.putInt(8).putLong(bd.longValueExact());
+                    case FLOAT4 -> out.putInt(4).putFloat(bd.floatValue());
+                    case FLOAT8 -> out.putInt(8).putDouble(bd.doubleValue());
+                    default -> binEncodingError(x, oid);
                 }
-                case INT4 -> {
-                    ByteBuffer buf = ByteBuffer.allocate(4);
-                    buf.putInt(i);
-                    yield buf;
+            }
+
+            case BigInteger bi -> {
+                switch (oid) {
+                    case NUMERIC -> NumericBin.encode(bi, out);
+                    case INT2 -> out.putInt(2).putShort(bi.shortValueExact());
+                    case INT4 -> out.putInt(4).putInt(bi.intValueExact());
+                    case INT8 -> out.putInt(8).putLong(bi.longValueExact());
+                    default -> binEncodingError(x, oid);
                 }
-                case INT8 -> {
-                    ByteBuffer buf = ByteBuffer.allocate(8);
-                    buf.putLong(i);
-                    yield buf;
+            }
+
+            // A small BigInt is a long inside.
+            case BigInt bi when bi.bipart == null -> {
+                switch (oid) {
+                    case INT2 -> out.putInt(2).putShort(toShortExact(bi.lpart));
+                    case INT4 -> out.putInt(4).putInt(Math.toIntExact(bi.lpart));
+                    case INT8 -> out.putInt(8).putLong(bi.lpart);
+                    case NUMERIC -> NumericBin.encode(bi.lpart, out);
+                    default -> binEncodingError(x, oid);
                 }
-                default -> binEncodingError(x, oid);
-            };
+            }
+
+            case BigInt bi -> encode(bi.toBigInteger(), oid, out);
 
-            case Long l -> switch (oid) {
-                case INT2 -> {
-                    ByteBuffer buf = ByteBuffer.allocate(2);
-                    buf.putShort(l.shortValue());
-                    yield buf;
+            case OffsetDateTime odt -> {
+                switch (oid) {
+                    case TIMESTAMPTZ -> putMicros(out, DateTimeBin.toMicros(odt));
+                    case TIMESTAMP -> putMicros(out, DateTimeBin.toMicros(
+                            odt.withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime()));
+                    case DATE -> out.putInt(4).putInt(DateTimeBin.toDays(
+                            odt.withOffsetSameInstant(ZoneOffset.UTC).toLocalDate()));
+                    default -> binEncodingError(x, oid);
                 }
-                case INT4 -> {
-                    ByteBuffer buf = ByteBuffer.allocate(4);
-                    buf.putInt(l.intValue());
-                    yield buf;
+            }
+
+            case ZonedDateTime zdt -> encode(zdt.toOffsetDateTime(), oid, out);
+
+            case Instant i when oid == OID.TIMESTAMPTZ -> putMicros(out, DateTimeBin.toMicros(i));
+
+            case Instant i -> encode(i.atOffset(ZoneOffset.UTC), oid, out);
+
+            // These two throw on toInstant(); a Timestamp doesn't.
+            case java.sql.Date d -> encode(d.toLocalDate(), oid, out);
+
+            case java.sql.Time t -> encode(t.toLocalTime(), oid, out);
+
+            case Date d -> encode(d.toInstant(), oid, out);
+
+            case LocalDateTime ldt -> {
+                switch (oid) {
+                    case TIMESTAMP -> putMicros(out, DateTimeBin.toMicros(ldt));
+                    case TIMESTAMPTZ -> putMicros(out, DateTimeBin.toMicros(ldt.atOffset(ZoneOffset.UTC)));
+                    case DATE -> out.putInt(4).putInt(DateTimeBin.toDays(ldt.toLocalDate()));
+                    default -> binEncodingError(x, oid);
                 }
-                case INT8 -> {
-                    ByteBuffer buf = ByteBuffer.allocate(8);
-                    buf.putLong(l);
-                    yield buf;
+            }
+
+            case LocalDate ld -> {
+                switch (oid) {
+                    case DATE -> out.putInt(4).putInt(DateTimeBin.toDays(ld));
+                    case TIMESTAMP -> putMicros(out, DateTimeBin.toMicros(ld.atStartOfDay()));
+                    case TIMESTAMPTZ -> putMicros(out, DateTimeBin.toMicros(ld.atStartOfDay().atOffset(ZoneOffset.UTC)));
+                    default -> binEncodingError(x, oid);
                 }
-                default -> binEncodingError(x, oid);
-            };
+            }
 
-            case Boolean b -> {
-                if (oid == OID.BOOL) {
-                    ByteBuffer buf = ByteBuffer.allocate(1);
-                    buf.put(b ? (byte)1 : (byte)0);
-                    yield buf;
+            case LocalTime lt -> {
+                switch (oid) {
+                    case TIME -> putMicros(out, DateTimeBin.toMicros(lt));
+                    case TIMETZ -> out.putInt(12).putLong(DateTimeBin.toMicros(lt)).putInt(0);
+                    default -> binEncodingError(x, oid);
                 }
-                else {
-                    yield binEncodingError(x, oid);
+            }
+
+            case OffsetTime ot -> {
+                switch (oid) {
+                    case TIMETZ -> out.putInt(12)
+                            .putLong(DateTimeBin.toMicros(ot.toLocalTime()))
+                            .putInt(-ot.getOffset().getTotalSeconds());
+                    case TIME -> putMicros(out, DateTimeBin.toMicros(ot.toLocalTime()));
+                    default -> binEncodingError(x, oid);
                 }
             }
 
-            case UUID u -> switch (oid) {
-                case UUID -> {
-                    ByteBuffer buf = ByteBuffer.allocate(16);
-                    buf.putLong(u.getMostSignificantBits());
-                    buf.putLong(u.getLeastSignificantBits());
-                    yield buf;
+            case Interval i when oid == OID.INTERVAL -> out.putInt(16)
+                    .putLong(i.micros())
+                    .putInt(i.days())
+                    .putInt(i.months());
+
+            case Duration d -> encode(Interval.of(d), oid, out);
+
+            case Period p -> encode(Interval.of(p), oid, out);
+
+            default -> {
+                if (ArrayBin.isArray(x)) {
+                    ArrayBin.encode(x, oid, this, out);
                 }
-                case TEXT, VARCHAR -> {
-                    byte[] bytes = getBytes(u.toString());
-                    yield ByteBuffer.wrap(bytes);
+                else {
+                    binEncodingError(x, oid);
                 }
-                default -> binEncodingError(x, oid);
-            };
+            }
+        }
+    }
 
-            case Float f -> switch (oid) {
-                case FLOAT4 -> {
-                    ByteBuffer buf = ByteBuffer.allocate(4);
-                    buf.putFloat(f);
-                    yield buf;
+    // A Long goes first: that's what Clojure numbers are.
+    public IEncoder encoder (OID oid) {
+        return switch (oid) {
+            case INT8 -> (x, out) -> {
+                if (x instanceof Long l) {
+                    out.putInt(8).putLong(l);
                 }
-                case FLOAT8 -> {
-                    ByteBuffer buf = ByteBuffer.allocate(8);
-                    buf.putDouble(f);
-                    yield buf;
+                else {
+                    encode(x, oid, out);
                 }
-                default -> binEncodingError(x, oid);
             };
-
-            case Double d -> switch (oid) {
-                case FLOAT4 -> {
-                    float f = d.floatValue();
-
-                    if (Float.isInfinite(f)) {
-                        throw new PGError("double->float coercion let to an infinite value: %s", d);
-                    }
-                    if (Float.isNaN(f)) {
-                        throw new PGError("double->float coercion let to an NAN value: %s", d);
-                    }
-
-                    ByteBuffer buf = ByteBuffer.allocate(4);
-                    buf.putFloat(f);
-                    yield buf;
+            case INT4 -> (x, out) -> {
+                if (x instanceof Long l) {
+                    out.putInt(4).putInt(l.intValue());
                 }
-                case FLOAT8 -> {
-                    ByteBuffer buf = ByteBuffer.allocate(8);
-                    buf.putDouble(d);
-                    yield buf;
+                else {
+                    encode(x, oid, out);
                 }
-                default -> binEncodingError(x, oid);
             };
-
-            case JSON.Wrapper w -> switch (oid) {
-                case JSON, JSONB -> {
-                    // TODO; guess the size?
-                    ByteArrayOutputStream out = new ByteArrayOutputStream(Const.JSON_ENC_BUF_SIZE);
-                    JSON.writeValue(out, w.value());
-                    yield ByteBuffer.wrap(out.toByteArray());
+            case FLOAT8 -> (x, out) -> {
+                if (x instanceof Double d) {
+                    out.putInt(8).putDouble(d);
                 }
-                default -> binEncodingError(w.value(), oid);
-
-            };
-
-            case Map<?,?> m -> switch (oid) {
-                case JSON, JSONB -> {
-                    // TODO; guess the size?
-                    ByteArrayOutputStream out = new ByteArrayOutputStream(Const.JSON_ENC_BUF_SIZE);
-                    JSON.writeValue(out, m);
-                    yield ByteBuffer.wrap(out.toByteArray());
+                else {
+                    encode(x, oid, out);
                 }
-                default -> binEncodingError(x, oid);
             };
-
-            // BigDecimal, BigInteger, BigInt
-
-            default -> binEncodingError(x, oid);
+            default -> (x, out) -> encode(x, oid, out);
         };
     }
 }
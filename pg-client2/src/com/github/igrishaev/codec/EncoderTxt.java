@@ -1,10 +1,16 @@
 package com.github.igrishaev.codec;
 
+import clojure.lang.Keyword;
 import clojure.lang.Symbol;
 import com.github.igrishaev.Const;
+import com.github.igrishaev.Interval;
 import com.github.igrishaev.enums.OID;
 
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.time.temporal.Temporal;
+import java.util.Date;
 import java.util.Map;
 import java.util.UUID;
 import java.math.BigDecimal;
@@ -12,6 +18,17 @@ import java.math.BigInteger;
 import clojure.lang.BigInt;
 import com.github.igrishaev.util.JSON;
 
+/*
+ * Text parameters. encode(x, oid, out) writes a value with its
+ * length prefix straight into a Sink, e.g. the Bind message:
+ * integers, decimals with a long unscaled value, UUIDs,
+ * booleans, strings and JSON make no intermediate strings.
+ * Deliberately, the rest is formatted into a String first and
+ * then written char by char: floats and doubles need the
+ * shortest round-trip digits only their toString() computes;
+ * larger decimals, dates, times, intervals and arrays are
+ * left to java.time, BigDecimal and the array encoder.
+ */
 public class EncoderTxt extends ACodec {
 
     public String encode(Object x, OID oid) {
@@ -61,7 +78,7 @@ public class EncoderTxt extends ACodec {
             };
 
             case UUID u -> switch (oid) {
-                case TEXT, VARCHAR -> String.valueOf(u);
+                case UUID, TEXT, VARCHAR -> String.valueOf(u);
                 default -> txtEncodingError(x, oid);
             };
 
@@ -111,7 +128,241 @@ public class EncoderTxt extends ACodec {
                 default -> txtEncodingError(x, oid);
             };
 
+            // Printed as is, the MAX and MIN dates are out of range.
+            case Temporal t when isDateOID(oid) && DateTimeTxt.infinity(t) != null -> DateTimeTxt.infinity(t);
+
+            // ISO 8601 is accepted whatever DateStyle is.
+            case OffsetDateTime odt -> switch (oid) {
+                case TIMESTAMPTZ -> odt.toString();
+                case TIMESTAMP -> odt.withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime().toString();
+                case DATE -> odt.withOffsetSameInstant(ZoneOffset.UTC).toLocalDate().toString();
+                default -> txtEncodingError(x, oid);
+            };
+
+            case ZonedDateTime zdt -> encode(zdt.toOffsetDateTime(), oid);
+
+            case Instant i -> encode(i.atOffset(ZoneOffset.UTC), oid);
+
+            // These two throw on toInstant(); a Timestamp doesn't.
+            case java.sql.Date d -> encode(d.toLocalDate(), oid);
+
+            case java.sql.Time t -> encode(t.toLocalTime(), oid);
+
+            case Date d -> encode(d.toInstant(), oid);
+
+            case LocalDateTime ldt -> switch (oid) {
+                case TIMESTAMP -> ldt.toString();
+                case TIMESTAMPTZ -> ldt.atOffset(ZoneOffset.UTC).toString();
+                case DATE -> ldt.toLocalDate().toString();
+                default -> txtEncodingError(x, oid);
+            };
+
+            case LocalDate ld -> switch (oid) {
+                case DATE, TIMESTAMP -> ld.toString();
+                case TIMESTAMPTZ -> ld.atStartOfDay().atOffset(ZoneOffset.UTC).toString();
+                default -> txtEncodingError(x, oid);
+            };
+
+            case LocalTime lt -> switch (oid) {
+                case TIME -> lt.toString();
+                case TIMETZ -> lt.atOffset(ZoneOffset.UTC).toString();
+                default -> txtEncodingError(x, oid);
+            };
+
+            case OffsetTime ot -> switch (oid) {
+                case TIMETZ -> ot.toString();
+                case TIME -> ot.toLocalTime().toString();
+                default -> txtEncodingError(x, oid);
+            };
+
+            case Interval i -> switch (oid) {
+                case INTERVAL -> String.format("%s mons %s days %s microseconds", i.months(), i.days(), i.micros());
+                default -> txtEncodingError(x, oid);
+            };
+
+            case Duration d -> encode(Interval.of(d), oid);
+
+            case Period p -> encode(Interval.of(p), oid);
+
+            default -> ArrayBin.isArray(x)
+                    ? ArrayTxt.encode(x, oid, this)
+                    : txtEncodingError(x, oid);
+        };
+    }
+
+    // For a type that's not built in (an enum, citext, ltree...),
+    // the server parses the text itself. A keyword goes as
+    // its name, so :active fits an enum label.
+    public String encodeCustom(Object x) {
+        return switch (x) {
+            case String s -> s;
+            case Keyword k -> k.getName();
+            default -> x.toString();
+        };
+    }
+
+    // Scratch room for the digits of a long, a decimal, a UUID.
+    private final byte[] digits = new byte[20];
+    private final byte[] chars = new byte[48];
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    // The digits of |l| at the end of the scratch array;
+    // returns where they start.
+    private int absDigits (long l) {
+        long value = Math.abs(l);
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        return i;
+    }
+
+    private void putDigits (Sink out, long l) {
+        if (l == Long.MIN_VALUE) {
+            putAscii(out, String.valueOf(l));
+            return;
+        }
+        int i = absDigits(l);
+        if (l < 0) {
+            digits[--i] = '-';
+        }
+        int len = digits.length - i;
+        out.putInt(len);
+        out.putBytes(digits, i, len);
+    }
+
+    // Integers are narrowed the way the string encoder does.
+    private void putInteger (Sink out, long l, Object x, OID oid) {
+        switch (oid) {
+            case INT2 -> putDigits(out, (short) l);
+            case INT4 -> putDigits(out, (int) l);
+            case INT8 -> putDigits(out, l);
             default -> txtEncodingError(x, oid);
+        }
+    }
+
+    // Plain notation from the unscaled long: 12.345, 0.005.
+    // A larger one or a negative scale goes as toString().
+    private void putDecimal (Sink out, BigDecimal bd) {
+        int scale = bd.scale();
+        BigInteger unscaled = bd.unscaledValue();
+        if (scale < 0 || scale > 20 || unscaled.bitLength() > 62) {
+            putAscii(out, bd.toString());
+            return;
+        }
+        long l = unscaled.longValue();
+        int start = absDigits(l);
+        int count = digits.length - start;
+        int len = 0;
+        if (l < 0) {
+            chars[len++] = '-';
+        }
+        if (count <= scale) {
+            chars[len++] = '0';
+            chars[len++] = '.';
+            for (int i = count; i < scale; i++) {
+                chars[len++] = '0';
+            }
+            System.arraycopy(digits, start, chars, len, count);
+            len += count;
+        }
+        else {
+            int intDigits = count - scale;
+            System.arraycopy(digits, start, chars, len, intDigits);
+            len += intDigits;
+            if (scale > 0) {
+                chars[len++] = '.';
+                System.arraycopy(digits, start + intDigits, chars, len, scale);
+                len += scale;
+            }
+        }
+        out.putInt(len);
+        out.putBytes(chars, 0, len);
+    }
+
+    private void putHex (long l, int offset, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            chars[offset + i] = HEX[(int) (l & 0xF)];
+            l >>>= 4;
+        }
+    }
+
+    private void putUUID (Sink out, UUID u) {
+        long hi = u.getMostSignificantBits();
+        long lo = u.getLeastSignificantBits();
+        putHex(hi >>> 32, 0, 8);
+        chars[8] = '-';
+        putHex(hi >>> 16, 9, 4);
+        chars[13] = '-';
+        putHex(hi, 14, 4);
+        chars[18] = '-';
+        putHex(lo >>> 48, 19, 4);
+        chars[23] = '-';
+        putHex(lo, 24, 12);
+        out.putInt(36);
+        out.putBytes(chars, 0, 36);
+    }
+
+    private static boolean isInteger (OID oid) {
+        return oid == OID.INT2 || oid == OID.INT4 || oid == OID.INT8;
+    }
+
+    /*
+     * Writes the value with its length prefix, see the class
+     * comment for what makes an intermediate string.
+     */
+    public void encode (Object x, OID oid, Sink out) {
+        switch (x) {
+            case Long l when isInteger(oid) -> putInteger(out, l, x, oid);
+            case Integer i when isInteger(oid) -> putInteger(out, i, x, oid);
+            case Short s when isInteger(oid) -> putInteger(out, s, x, oid);
+            case BigInt bi when bi.bipart == null && isInteger(oid) -> putDigits(out, bi.lpart);
+            case BigDecimal bd when oid == OID.NUMERIC || oid == OID.FLOAT4 || oid == OID.FLOAT8 -> putDecimal(out, bd);
+            case Boolean b when oid == OID.BOOL -> out.putInt(1).putByte(b ? (byte) 't' : (byte) 'f');
+            case UUID u when oid == OID.UUID || oid == OID.TEXT || oid == OID.VARCHAR -> putUUID(out, u);
+            case String s when oid == OID.TEXT || oid == OID.VARCHAR -> putString(out, s);
+            case JSON.Wrapper w when isJSON(oid) && isUTF8() -> putJSON(out, w.value(), false);
+            case Map<?,?> m when isJSON(oid) && isUTF8() -> putJSON(out, m, false);
+            case Number n -> putAscii(out, encode(x, oid));
+            case UUID u -> putAscii(out, encode(x, oid));
+            default -> putString(out, encode(x, oid));
+        }
+    }
+
+    private static boolean isDateOID (OID oid) {
+        return oid == OID.DATE || oid == OID.TIMESTAMP || oid == OID.TIMESTAMPTZ;
+    }
+
+    private static boolean isJSON (OID oid) {
+        return oid == OID.JSON || oid == OID.JSONB;
+    }
+
+    public void encodeCustom (Object x, Sink out) {
+        putString(out, encodeCustom(x));
+    }
+
+    // A Long goes first: that's what Clojure numbers are.
+    public IEncoder encoder (OID oid) {
+        return switch (oid) {
+            case INT8 -> (x, out) -> {
+                if (x instanceof Long l) {
+                    putDigits(out, l);
+                }
+                else {
+                    encode(x, oid, out);
+                }
+            };
+            case TEXT, VARCHAR -> (x, out) -> {
+                if (x instanceof String s) {
+                    putString(out, s);
+                }
+                else {
+                    encode(x, oid, out);
+                }
+            };
+            default -> (x, out) -> encode(x, oid, out);
         };
     }
 }
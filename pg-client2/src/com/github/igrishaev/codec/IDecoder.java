@@ -0,0 +1,12 @@
+package com.github.igrishaev.codec;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Decodes a non-null value of a column whose type and format
+ * are known in advance. Resolved once per result, see TypeRegistry.
+ */
+@FunctionalInterface
+public interface IDecoder {
+    Object decode(ByteBuffer buf);
+}
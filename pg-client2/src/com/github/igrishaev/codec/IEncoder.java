@@ -0,0 +1,11 @@
+package com.github.igrishaev.codec;
+
+/*
+ * Writes a non-null parameter of a known type, length prefix
+ * included. Resolved once per prepared statement, see
+ * EncoderTxt.encoder and EncoderBin.encoder.
+ */
+@FunctionalInterface
+public interface IEncoder {
+    void encode(Object x, Sink out);
+}
@@ -0,0 +1,208 @@
+package com.github.igrishaev.codec;
+
+import com.github.igrishaev.PGError;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+
+/*
+ * Binary NUMERIC: ndigits, weight, sign and dscale (int16 each),
+ * then ndigits base-10000 digits, the most significant first.
+ * The weight is the power of 10000 of the first digit. Works on
+ * the unscaled value directly, no string round trip, and writes
+ * the digits with the length prefix straight into a Sink.
+ * Special values (NaN, +-Infinity) come as doubles as BigDecimal
+ * has no room for them.
+ */
+public final class NumericBin {
+
+    private static final int NBASE = 10000;
+    private static final BigInteger BI_NBASE = BigInteger.valueOf(NBASE);
+    private static final BigInteger BI_NBASE_4 = BigInteger.valueOf((long) NBASE * NBASE * NBASE * NBASE);
+
+    private static final short SIGN_POS = 0x0000;
+    private static final short SIGN_NEG = 0x4000;
+    private static final short SIGN_NAN = (short) 0xC000;
+    private static final short SIGN_PINF = (short) 0xD000;
+    private static final short SIGN_NINF = (short) 0xF000;
+
+    private static final long[] POW10 = {1, 10, 100, 1000};
+
+    private NumericBin() {}
+
+    private static void putSpecial(Sink out, short sign) {
+        out.putInt(8)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort(sign)
+                .putShort((short) 0);
+    }
+
+    public static void encode(double d, Sink out) {
+        if (Double.isNaN(d)) {
+            putSpecial(out, SIGN_NAN);
+        }
+        else if (d == Double.POSITIVE_INFINITY) {
+            putSpecial(out, SIGN_PINF);
+        }
+        else if (d == Double.NEGATIVE_INFINITY) {
+            putSpecial(out, SIGN_NINF);
+        }
+        else {
+            encode(BigDecimal.valueOf(d), out);
+        }
+    }
+
+    // An integer: no scale, no BigDecimal.
+    public static void encode(long l, Sink out) {
+        if (l == Long.MIN_VALUE) {
+            encode(BigDecimal.valueOf(l), out);
+            return;
+        }
+        short sign = l < 0 ? SIGN_NEG : SIGN_POS;
+        long n = Math.abs(l);
+        short[] digits = new short[5];
+        int count = 0;
+        while (n != 0) {
+            digits[count++] = (short) (n % NBASE);
+            n /= NBASE;
+        }
+        putDigits(out, digits, count, count - 1, sign, 0);
+    }
+
+    public static void encode(BigDecimal value, Sink out) {
+
+        int scale = value.scale();
+        if (scale < 0) {
+            value = value.setScale(0, RoundingMode.UNNECESSARY);
+            scale = 0;
+        }
+        if (scale > 0x3FFF) {
+            throw new PGError("numeric scale is too large: %s", scale);
+        }
+
+        short sign = value.signum() < 0 ? SIGN_NEG : SIGN_POS;
+        BigInteger unscaled = value.unscaledValue().abs();
+
+        // Align the decimal point to a digit boundary.
+        int pad = (4 - scale % 4) % 4;
+        int fracDigits = (scale + pad) / 4;
+
+        short[] digits;
+        int count = 0;
+
+        if (unscaled.bitLength() < 52) {
+            long n = unscaled.longValue() * POW10[pad];
+            digits = new short[5];
+            while (n != 0) {
+                digits[count++] = (short) (n % NBASE);
+                n /= NBASE;
+            }
+        }
+        else {
+            BigInteger n = unscaled.multiply(BigInteger.valueOf(POW10[pad]));
+            digits = new short[(n.bitLength() / 13) + 2];
+            while (n.signum() != 0) {
+                BigInteger[] qr = n.divideAndRemainder(BI_NBASE);
+                digits[count++] = qr[1].shortValue();
+                n = qr[0];
+            }
+        }
+
+        putDigits(out, digits, count, count - 1 - fracDigits, sign, scale);
+    }
+
+    public static void encode(BigInteger value, Sink out) {
+        if (value.bitLength() < 64) {
+            encode(value.longValue(), out);
+        }
+        else {
+            encode(new BigDecimal(value), out);
+        }
+    }
+
+    // The digits go least significant first.
+    private static void putDigits(Sink out, short[] digits, int count, int weight, short sign, int scale) {
+        if (count == 0) {
+            out.putInt(8)
+                    .putShort((short) 0)
+                    .putShort((short) 0)
+                    .putShort(SIGN_POS)
+                    .putShort((short) scale);
+            return;
+        }
+
+        // Trailing zero digits are implied by the weight.
+        int low = 0;
+        while (digits[low] == 0) {
+            low++;
+        }
+        int ndigits = count - low;
+
+        out.putInt(8 + 2 * ndigits)
+                .putShort((short) ndigits)
+                .putShort((short) weight)
+                .putShort(sign)
+                .putShort((short) scale);
+        for (int i = count - 1; i >= low; i--) {
+            out.putShort(digits[i]);
+        }
+    }
+
+    public static Object decode(ByteBuffer buf) {
+        int ndigits = buf.getShort();
+        int weight = buf.getShort();
+        short sign = buf.getShort();
+        int dscale = buf.getShort() & 0x3FFF;
+
+        switch (sign) {
+            case SIGN_POS, SIGN_NEG:
+                break;
+            case SIGN_NAN:
+                return Double.NaN;
+            case SIGN_PINF:
+                return Double.POSITIVE_INFINITY;
+            case SIGN_NINF:
+                return Double.NEGATIVE_INFINITY;
+            default:
+                throw new PGError("wrong numeric sign: %s", sign);
+        }
+
+        if (ndigits == 0) {
+            return BigDecimal.valueOf(0, dscale);
+        }
+
+        BigDecimal result;
+
+        // Up to 4 digits fit a long.
+        if (ndigits <= 4) {
+            long n = 0;
+            for (int i = 0; i < ndigits; i++) {
+                n = n * NBASE + buf.getShort();
+            }
+            result = BigDecimal.valueOf(sign == SIGN_NEG ? -n : n, 4 * (ndigits - 1 - weight));
+        }
+        else {
+            BigInteger n = BigInteger.ZERO;
+            int i = 0;
+            while (i < ndigits) {
+                int chunk = Math.min(4, ndigits - i);
+                long part = 0;
+                for (int j = 0; j < chunk; j++) {
+                    part = part * NBASE + buf.getShort();
+                }
+                BigInteger mul = chunk == 4 ? BI_NBASE_4 : BI_NBASE.pow(chunk);
+                n = n.multiply(mul).add(BigInteger.valueOf(part));
+                i += chunk;
+            }
+            if (sign == SIGN_NEG) {
+                n = n.negate();
+            }
+            result = new BigDecimal(n, 4 * (ndigits - 1 - weight));
+        }
+
+        return result.setScale(dscale, RoundingMode.DOWN);
+    }
+}
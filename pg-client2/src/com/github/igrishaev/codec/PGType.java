@@ -0,0 +1,30 @@
+package com.github.igrishaev.codec;
+
+/*
+ * A row of pg_type: just what it takes to pick a codec
+ * for a type the OID enum doesn't know. The type is 'b'ase,
+ * 'd'omain, 'e'num, 'c'omposite and so on; the category
+ * is 'A'rray, 'S'tring, 'E'num, 'U'ser-defined, etc.
+ */
+public record PGType (
+        int oid,
+        String name,
+        char type,
+        char category,
+        int elem,
+        int baseType
+) {
+
+    public boolean isDomain() {
+        return type == 'd' && baseType != 0;
+    }
+
+    public boolean isArray() {
+        return category == 'A' && elem != 0;
+    }
+
+    // Their binary form is the same as the text one.
+    public boolean isTextLike() {
+        return category == 'S' || category == 'E';
+    }
+}
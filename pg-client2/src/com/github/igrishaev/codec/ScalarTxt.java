@@ -0,0 +1,257 @@
+package com.github.igrishaev.codec;
+
+import com.github.igrishaev.PGError;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/*
+ * Parses text integers, floats and UUIDs right from the bytes
+ * with no intermediate strings. Digits and hex are ASCII in
+ * any client encoding. Floats take the exact fast path when
+ * the digits fit into the mantissa and the power of ten is
+ * small; otherwise, e.g. for 17 significant digits or an
+ * exponent, they fall back to the JDK parser.
+ */
+public final class ScalarTxt {
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+            1e21, 1e22
+    };
+
+    private static final float[] POW10F = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    // Below these, a float or a double holds a number exactly.
+    private static final long MAX_EXACT_DOUBLE = 1L << 53;
+    private static final long MAX_EXACT_FLOAT = 1L << 24;
+
+    private ScalarTxt() {}
+
+    private static PGError error(ByteBuffer buf, String what) {
+        return new PGError("could not parse %s: %s", what, toString(buf));
+    }
+
+    private static String toString(ByteBuffer buf) {
+        int offset = buf.arrayOffset() + buf.position();
+        return new String(buf.array(), offset, buf.remaining(), StandardCharsets.UTF_8);
+    }
+
+    public static long parseLong(ByteBuffer buf) {
+        return parseLong(buf, Long.MIN_VALUE, Long.MAX_VALUE, "int8");
+    }
+
+    public static int parseInt(ByteBuffer buf) {
+        return (int) parseLong(buf, Integer.MIN_VALUE, Integer.MAX_VALUE, "int4");
+    }
+
+    public static short parseShort(ByteBuffer buf) {
+        return (short) parseLong(buf, Short.MIN_VALUE, Short.MAX_VALUE, "int2");
+    }
+
+    // An OID is unsigned; it comes as an int, like in binary.
+    public static int parseOID(ByteBuffer buf) {
+        return (int) parseLong(buf, 0, 0xFFFFFFFFL, "oid");
+    }
+
+    // Accumulates negatively so that MIN_VALUE fits.
+    private static long parseLong(ByteBuffer buf, long min, long max, String what) {
+        byte[] bytes = buf.array();
+        int i = buf.arrayOffset() + buf.position();
+        int end = i + buf.remaining();
+        if (i == end) {
+            throw error(buf, what);
+        }
+        boolean negative = false;
+        byte first = bytes[i];
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (i == end) {
+                throw error(buf, what);
+            }
+        }
+        long limit = negative ? min : -max;
+        long multmin = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9 || result < multmin) {
+                throw error(buf, what);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw error(buf, what);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    public static double parseDouble(ByteBuffer buf) {
+        byte[] bytes = buf.array();
+        int start = buf.arrayOffset() + buf.position();
+        int end = start + buf.remaining();
+        int i = start;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long digits = 0;
+        int scale = -1;
+        int count = 0;
+        for (; i < end; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                digits = digits * 10 + (b - '0');
+                count++;
+                if (scale >= 0) {
+                    scale++;
+                }
+                if (digits >= MAX_EXACT_DOUBLE) {
+                    return parseDoubleSlow(buf);
+                }
+            }
+            else if (b == '.' && scale < 0) {
+                scale = 0;
+            }
+            else {
+                // NaN, Infinity, exponents and the rest
+                return parseDoubleSlow(buf);
+            }
+        }
+        if (count == 0) {
+            throw error(buf, "float8");
+        }
+        if (scale < 0) {
+            scale = 0;
+        }
+        if (scale >= POW10.length) {
+            return parseDoubleSlow(buf);
+        }
+        double value = (double) digits / POW10[scale];
+        return negative ? -value : value;
+    }
+
+    public static float parseFloat(ByteBuffer buf) {
+        byte[] bytes = buf.array();
+        int start = buf.arrayOffset() + buf.position();
+        int end = start + buf.remaining();
+        int i = start;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long digits = 0;
+        int scale = -1;
+        int count = 0;
+        for (; i < end; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                digits = digits * 10 + (b - '0');
+                count++;
+                if (scale >= 0) {
+                    scale++;
+                }
+                if (digits >= MAX_EXACT_FLOAT) {
+                    return parseFloatSlow(buf);
+                }
+            }
+            else if (b == '.' && scale < 0) {
+                scale = 0;
+            }
+            else {
+                return parseFloatSlow(buf);
+            }
+        }
+        if (count == 0) {
+            throw error(buf, "float4");
+        }
+        if (scale < 0) {
+            scale = 0;
+        }
+        if (scale >= POW10F.length) {
+            return parseFloatSlow(buf);
+        }
+        float value = (float) digits / POW10F[scale];
+        return negative ? -value : value;
+    }
+
+    private static double parseDoubleSlow(ByteBuffer buf) {
+        try {
+            return Double.parseDouble(toString(buf));
+        }
+        catch (NumberFormatException e) {
+            throw error(buf, "float8");
+        }
+    }
+
+    private static float parseFloatSlow(ByteBuffer buf) {
+        try {
+            return Float.parseFloat(toString(buf));
+        }
+        catch (NumberFormatException e) {
+            throw error(buf, "float4");
+        }
+    }
+
+    private static int hex(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static long parseHex(ByteBuffer buf, byte[] bytes, int start, int end) {
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            int h = hex(bytes[i]);
+            if (h < 0) {
+                throw error(buf, "uuid");
+            }
+            result = (result << 4) | h;
+        }
+        return result;
+    }
+
+    // The server always prints the canonical 8-4-4-4-12 form.
+    public static UUID parseUUID(ByteBuffer buf) {
+        byte[] bytes = buf.array();
+        int i = buf.arrayOffset() + buf.position();
+        if (buf.remaining() != 36
+                || bytes[i + 8] != '-'
+                || bytes[i + 13] != '-'
+                || bytes[i + 18] != '-'
+                || bytes[i + 23] != '-') {
+            throw error(buf, "uuid");
+        }
+        long hi = parseHex(buf, bytes, i, i + 8) << 32
+                | parseHex(buf, bytes, i + 9, i + 13) << 16
+                | parseHex(buf, bytes, i + 14, i + 18);
+        long lo = parseHex(buf, bytes, i + 19, i + 23) << 48
+                | parseHex(buf, bytes, i + 24, i + 36);
+        return new UUID(hi, lo);
+    }
+
+    public static boolean parseBoolean(ByteBuffer buf) {
+        if (buf.remaining() == 1) {
+            switch (buf.get(buf.position())) {
+                case 't': return true;
+                case 'f': return false;
+            }
+        }
+        throw error(buf, "bool");
+    }
+}
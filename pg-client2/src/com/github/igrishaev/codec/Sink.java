@@ -0,0 +1,22 @@
+package com.github.igrishaev.codec;
+
+import java.io.OutputStream;
+
+/*
+ * Where encoders write parameters to, e.g. the Bind message
+ * being built. Strings go in the client encoding. A value of
+ * unknown size is written between beginValue() and endValue(),
+ * which back-patches its length.
+ */
+public interface Sink {
+    Sink putByte(byte b);
+    Sink putShort(short s);
+    Sink putInt(int i);
+    Sink putLong(long l);
+    Sink putFloat(float f);
+    Sink putDouble(double d);
+    Sink putBytes(byte[] bytes, int offset, int len);
+    Sink putString(String s);
+    OutputStream beginValue();
+    int endValue();
+}
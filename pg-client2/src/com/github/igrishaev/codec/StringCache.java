@@ -0,0 +1,86 @@
+package com.github.igrishaev.codec;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+ * Returns the same String for the same bytes, for columns
+ * where a few values repeat over many rows (status, country,
+ * currency, enums). One per column of a result: a small
+ * open-addressed table keyed by the hash of the raw bytes.
+ * Once it's full, and for long values, strings are made
+ * as usual.
+ */
+public class StringCache implements IDecoder {
+
+    private static final int SIZE = 256;
+    private static final int MAX_ENTRIES = SIZE / 2;
+    private static final int MAX_LENGTH = 64;
+
+    // Shared by the caches of a connection.
+    public static class Stats {
+
+        private long hits;
+        private long misses;
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+    }
+
+    private final ACodec codec;
+    private final Stats stats;
+    private final int[] hashes;
+    private final byte[][] keys;
+    private final String[] values;
+    private int size;
+
+    public StringCache(ACodec codec, Stats stats) {
+        this.codec = codec;
+        this.stats = stats;
+        this.hashes = new int[SIZE];
+        this.keys = new byte[SIZE][];
+        this.values = new String[SIZE];
+    }
+
+    public Object decode(ByteBuffer buf) {
+        int len = buf.remaining();
+        if (len > MAX_LENGTH) {
+            stats.misses++;
+            return codec.getString(buf);
+        }
+
+        byte[] bytes = buf.array();
+        int from = buf.arrayOffset() + buf.position();
+        int to = from + len;
+        int hash = 1;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+
+        int mask = SIZE - 1;
+        int i = (hash ^ (hash >>> 16)) & mask;
+        byte[] key;
+        while ((key = keys[i]) != null) {
+            if (hashes[i] == hash && Arrays.equals(key, 0, key.length, bytes, from, to)) {
+                stats.hits++;
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+
+        stats.misses++;
+        String value = codec.getString(buf);
+        if (size < MAX_ENTRIES) {
+            hashes[i] = hash;
+            keys[i] = Arrays.copyOfRange(bytes, from, to);
+            values[i] = value;
+            size++;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.igrishaev.codec;
+
+import com.github.igrishaev.enums.Format;
+import com.github.igrishaev.util.IntMap;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/*
+ * The types of a database loaded from pg_type, and the
+ * decoders and text encoders set by type name, for the types
+ * missing in the OID enum (enums, domains, citext, hstore,
+ * ltree...). May
+ * be shared by connections to the same database, e.g. in a
+ * pool, so that pg_type is queried once. The types are
+ * replaced all at once on reload; the version tells the
+ * connections to drop what they've resolved before.
+ */
+public class TypeCatalog {
+
+    private volatile IntMap<PGType> types;
+    private volatile int version;
+    private final Map<String, IDecoder> txtDecoders;
+    private final Map<String, IDecoder> binDecoders;
+    private final Map<String, Function<Object, String>> encoders;
+
+    public TypeCatalog() {
+        this.types = new IntMap<>();
+        this.txtDecoders = new ConcurrentHashMap<>();
+        this.binDecoders = new ConcurrentHashMap<>();
+        this.encoders = new ConcurrentHashMap<>();
+    }
+
+    public PGType get(int oid) {
+        return types.get(oid);
+    }
+
+    public boolean contains(int oid) {
+        return types.get(oid) != null;
+    }
+
+    public int size() {
+        return types.size();
+    }
+
+    public int version() {
+        return version;
+    }
+
+    public synchronized void load(Collection<PGType> pgTypes) {
+        IntMap<PGType> typesNew = new IntMap<>(pgTypes.size());
+        for (PGType pgType: pgTypes) {
+            typesNew.put(pgType.oid(), pgType);
+        }
+        types = typesNew;
+        version++;
+    }
+
+    public synchronized void register(String typeName, Format format, IDecoder decoder) {
+        switch (format) {
+            case TXT -> txtDecoders.put(typeName, decoder);
+            case BIN -> binDecoders.put(typeName, decoder);
+        }
+        version++;
+    }
+
+    public IDecoder getDecoder(String typeName, Format format) {
+        return switch (format) {
+            case TXT -> txtDecoders.get(typeName);
+            case BIN -> binDecoders.get(typeName);
+        };
+    }
+
+    // Parameters of these types always go as text.
+    public synchronized void register(String typeName, Function<Object, String> encoder) {
+        encoders.put(typeName, encoder);
+        version++;
+    }
+
+    public Function<Object, String> getEncoder(String typeName) {
+        return encoders.get(typeName);
+    }
+}
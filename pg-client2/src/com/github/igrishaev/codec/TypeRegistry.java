@@ -0,0 +1,325 @@
+package com.github.igrishaev.codec;
+
+import com.github.igrishaev.enums.Format;
+import com.github.igrishaev.enums.OID;
+import com.github.igrishaev.msg.RowDescription;
+import com.github.igrishaev.util.IntMap;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/*
+ * Resolves a decoder by OID and format. Defaults come from
+ * DecoderTxt and DecoderBin; a custom decoder registered
+ * for an OID takes over. Decoders are cached per OID, so a
+ * plan for a result costs an array lookup per column.
+ *
+ * The OIDs that aren't built in are looked up in the type
+ * catalog: a decoder set for the type name goes first, then
+ * a domain takes the decoder of its base type, an array gets
+ * its elements decoded, enums and strings become strings.
+ * Anything else comes as a string or bytes, depending on
+ * the format.
+ *
+ * The same goes for the text encoders set by type name: one
+ * for a domain goes first, then the one for its base type.
+ *
+ * With strings deduplicated, each plain text column of
+ * a plan gets its own StringCache.
+ *
+ * With binary decoding on, a column is asked in binary only
+ * when there is a binary decoder for its type: a registered
+ * one or a DecoderBin default. The rest come as text.
+ */
+public class TypeRegistry {
+
+    // Domains over domains over...
+    private static final int MAX_DEPTH = 8;
+
+    private static final Format[] ALL_BIN = {Format.BIN};
+
+    // Cached for a type with no encoder set.
+    private static final Function<Object, String> NO_ENCODER = x -> null;
+
+    private final DecoderTxt decoderTxt;
+    private final DecoderBin decoderBin;
+    private final TypeCatalog catalog;
+    private final IDecoder[] txt;
+    private final IDecoder[] bin;
+    private final boolean[] txtRegistered;
+    private final boolean[] binRegistered;
+    private final StringCache.Stats stringCacheStats;
+    private final IntMap<IDecoder> txtCustom;
+    private final IntMap<IDecoder> binCustom;
+    private final IntMap<Function<Object, String>> encoders;
+    private int catalogVersion;
+
+    public TypeRegistry(DecoderTxt decoderTxt, DecoderBin decoderBin) {
+        this(decoderTxt, decoderBin, new TypeCatalog());
+    }
+
+    public TypeRegistry(DecoderTxt decoderTxt, DecoderBin decoderBin, TypeCatalog catalog) {
+        this.decoderTxt = decoderTxt;
+        this.decoderBin = decoderBin;
+        this.catalog = catalog;
+        this.txt = new IDecoder[OID.values().length];
+        this.bin = new IDecoder[OID.values().length];
+        this.txtRegistered = new boolean[OID.values().length];
+        this.binRegistered = new boolean[OID.values().length];
+        this.stringCacheStats = new StringCache.Stats();
+        this.txtCustom = new IntMap<>();
+        this.binCustom = new IntMap<>();
+        this.encoders = new IntMap<>();
+        this.catalogVersion = catalog.version();
+    }
+
+    public TypeCatalog getCatalog() {
+        return catalog;
+    }
+
+    public StringCache.Stats getStringCacheStats() {
+        return stringCacheStats;
+    }
+
+    /*
+     * A registry with codecs of its own that won't follow later
+     * changes of the connection's settings (SET TimeZone...),
+     * for values decoded after the result, maybe on another
+     * thread. The registered decoders are shared as they are.
+     */
+    public TypeRegistry snapshot() {
+        TypeRegistry copy = new TypeRegistry(decoderTxt.copy(), decoderBin.copy(), catalog);
+        OID[] oids = OID.values();
+        for (int i = 0; i < oids.length; i++) {
+            if (txtRegistered[i]) {
+                copy.register(oids[i], Format.TXT, txt[i]);
+            }
+            if (binRegistered[i]) {
+                copy.register(oids[i], Format.BIN, bin[i]);
+            }
+        }
+        return copy;
+    }
+
+    public void register(OID oid, Format format, IDecoder decoder) {
+        switch (format) {
+            case TXT -> {
+                txt[oid.ordinal()] = decoder;
+                txtRegistered[oid.ordinal()] = true;
+            }
+            case BIN -> {
+                bin[oid.ordinal()] = decoder;
+                binRegistered[oid.ordinal()] = true;
+            }
+        }
+    }
+
+    // A type decoded into a string by default, in both formats.
+    private boolean isPlainText(int typeOid, Format format) {
+        OID oid = OID.ofIntOrNull(typeOid);
+        if (oid != null) {
+            boolean registered = format == Format.TXT
+                    ? txtRegistered[oid.ordinal()]
+                    : binRegistered[oid.ordinal()];
+            return !registered && switch (oid) {
+                case TEXT, VARCHAR, BPCHAR, NAME -> true;
+                default -> false;
+            };
+        }
+        PGType pgType = catalog.get(typeOid);
+        return pgType != null
+                && pgType.isTextLike()
+                && catalog.getDecoder(pgType.name(), format) == null;
+    }
+
+    private boolean isBinary(int typeOid, int depth) {
+        OID oid = OID.ofIntOrNull(typeOid);
+        if (oid != null) {
+            int i = oid.ordinal();
+            if (binRegistered[i]) {
+                return true;
+            }
+            // A text decoder of one's own wins over the binary default.
+            return !txtRegistered[i] && decoderBin.supports(oid);
+        }
+        PGType pgType = catalog.get(typeOid);
+        if (pgType == null || depth > MAX_DEPTH) {
+            return false;
+        }
+        if (catalog.getDecoder(pgType.name(), Format.BIN) != null) {
+            return true;
+        }
+        if (catalog.getDecoder(pgType.name(), Format.TXT) != null) {
+            return false;
+        }
+        if (pgType.isDomain()) {
+            return isBinary(pgType.baseType(), depth + 1);
+        }
+        if (pgType.isArray()) {
+            return isBinary(pgType.elem(), depth + 1);
+        }
+        return pgType.isTextLike();
+    }
+
+    // Result formats for Bind: one for all the columns when
+    // they are all binary, or one per column.
+    public Format[] columnFormats(RowDescription rowDescription) {
+        RowDescription.Column[] cols = rowDescription.columns();
+        Format[] formats = null;
+        for (int i = 0; i < cols.length; i++) {
+            if (!isBinary(cols[i].typeOid(), 0)) {
+                if (formats == null) {
+                    formats = new Format[cols.length];
+                    Arrays.fill(formats, Format.BIN);
+                }
+                formats[i] = Format.TXT;
+            }
+        }
+        return formats == null ? ALL_BIN : formats;
+    }
+
+    public IDecoder decoder(OID oid, Format format) {
+        int i = oid.ordinal();
+        return switch (format) {
+            case TXT -> {
+                IDecoder decoder = txt[i];
+                if (decoder == null) {
+                    decoder = decoderTxt.decoder(oid);
+                    txt[i] = decoder;
+                }
+                yield decoder;
+            }
+            case BIN -> {
+                IDecoder decoder = bin[i];
+                if (decoder == null) {
+                    decoder = decoderBin.decoder(oid);
+                    bin[i] = decoder;
+                }
+                yield decoder;
+            }
+        };
+    }
+
+    public IDecoder decoder(int typeOid, Format format) {
+        OID oid = OID.ofIntOrNull(typeOid);
+        if (oid != null) {
+            return decoder(oid, format);
+        }
+        syncCatalog();
+        IntMap<IDecoder> cache = format == Format.TXT ? txtCustom : binCustom;
+        IDecoder decoder = cache.get(typeOid);
+        if (decoder == null) {
+            decoder = resolve(typeOid, format, 0);
+            cache.put(typeOid, decoder);
+        }
+        return decoder;
+    }
+
+    // Drop what's resolved from an older catalog.
+    private void syncCatalog() {
+        if (catalogVersion != catalog.version()) {
+            txtCustom.clear();
+            binCustom.clear();
+            encoders.clear();
+            catalogVersion = catalog.version();
+        }
+    }
+
+    private IDecoder resolve(int typeOid, Format format, int depth) {
+        OID oid = OID.ofIntOrNull(typeOid);
+        if (oid != null) {
+            return decoder(oid, format);
+        }
+        PGType pgType = catalog.get(typeOid);
+        if (pgType == null || depth > MAX_DEPTH) {
+            return fallback(format);
+        }
+        IDecoder custom = catalog.getDecoder(pgType.name(), format);
+        if (custom != null) {
+            return custom;
+        }
+        if (pgType.isDomain()) {
+            return resolve(pgType.baseType(), format, depth + 1);
+        }
+        if (pgType.isArray() && format == Format.BIN) {
+            IDecoder element = resolve(pgType.elem(), format, depth + 1);
+            return buf -> ArrayBin.decode(buf, element);
+        }
+        if (pgType.isTextLike()) {
+            return format == Format.TXT ? decoderTxt::getString : decoderBin::getString;
+        }
+        return fallback(format);
+    }
+
+    private IDecoder fallback(Format format) {
+        return format == Format.TXT ? decoderTxt::getString : ACodec::getBytes;
+    }
+
+    // The text encoder set for a type that's not built in,
+    // or for a type it's a domain over; null otherwise.
+    public Function<Object, String> encoder(int typeOid) {
+        syncCatalog();
+        Function<Object, String> encoder = encoders.get(typeOid);
+        if (encoder == null) {
+            encoder = resolveEncoder(typeOid);
+            encoders.put(typeOid, encoder);
+        }
+        return encoder == NO_ENCODER ? null : encoder;
+    }
+
+    private Function<Object, String> resolveEncoder(int typeOid) {
+        int code = typeOid;
+        for (int depth = 0; depth <= MAX_DEPTH; depth++) {
+            PGType pgType = catalog.get(code);
+            if (pgType == null) {
+                return NO_ENCODER;
+            }
+            Function<Object, String> encoder = catalog.getEncoder(pgType.name());
+            if (encoder != null) {
+                return encoder;
+            }
+            if (!pgType.isDomain()) {
+                return NO_ENCODER;
+            }
+            code = pgType.baseType();
+        }
+        return NO_ENCODER;
+    }
+
+    // The built-in type to encode a parameter of a custom type
+    // with, if it's a domain over one; null otherwise.
+    public OID baseOID(int typeOid) {
+        int code = typeOid;
+        for (int depth = 0; depth <= MAX_DEPTH; depth++) {
+            OID oid = OID.ofIntOrNull(code);
+            if (oid != null) {
+                return oid;
+            }
+            PGType pgType = catalog.get(code);
+            if (pgType == null || !pgType.isDomain()) {
+                return null;
+            }
+            code = pgType.baseType();
+        }
+        return null;
+    }
+
+    public IDecoder[] plan(RowDescription rowDescription) {
+        return plan(rowDescription, false);
+    }
+
+    public IDecoder[] plan(RowDescription rowDescription, boolean dedupStrings) {
+        RowDescription.Column[] cols = rowDescription.columns();
+        IDecoder[] decoders = new IDecoder[cols.length];
+        for (int i = 0; i < cols.length; i++) {
+            RowDescription.Column col = cols[i];
+            if (dedupStrings && isPlainText(col.typeOid(), col.format())) {
+                decoders[i] = new StringCache(decoderTxt, stringCacheStats);
+            }
+            else {
+                decoders[i] = decoder(col.typeOid(), col.format());
+            }
+        }
+        return decoders;
+    }
+}
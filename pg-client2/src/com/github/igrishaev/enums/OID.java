@@ -201,13 +201,27 @@ public enum OID {
     PG_BRIN_MINMAX_MULTI_SUMMARY (4601);
 
     private final int code;
+    private OID elementOID;
 
-    private final static Map<Integer, OID> intToItem;
+    // Indexed by code: the built-in OIDs are small numbers.
+    private final static OID[] codeToItem;
 
     static {
-        intToItem = new HashMap<>();
+        int maxCode = 0;
         for (OID oid: values()) {
-            intToItem.put(oid.code, oid);
+            maxCode = Math.max(maxCode, oid.code);
+        }
+        codeToItem = new OID[maxCode + 1];
+        Map<String, OID> nameToItem = new HashMap<>();
+        for (OID oid: values()) {
+            codeToItem[oid.code] = oid;
+            nameToItem.put(oid.name(), oid);
+        }
+        // An array type is named after its element with a leading _.
+        for (OID oid: values()) {
+            if (oid.name().startsWith("_")) {
+                oid.elementOID = nameToItem.get(oid.name().substring(1));
+            }
         }
     }
 
@@ -215,8 +229,13 @@ public enum OID {
         this.code = code;
     }
 
+    // Null for a type that's not built in, e.g. an enum or citext.
+    public static OID ofIntOrNull (int code) {
+        return code >= 0 && code < codeToItem.length ? codeToItem[code] : null;
+    }
+
     public static OID ofInt (int code) {
-        final OID result = intToItem.get(code);
+        final OID result = ofIntOrNull(code);
         if (result == null) {
             throw new PGError("unknown OID, code: %s", code);
         }
@@ -229,4 +248,9 @@ public enum OID {
         return code;
     }
 
+    // The type of elements for an array type, null otherwise.
+    public OID elementOID() {
+        return elementOID;
+    }
+
 }
@@ -1,41 +1,53 @@
 package com.github.igrishaev.msg;
 
-import java.nio.ByteBuffer;
-
+import com.github.igrishaev.MessageWriter;
+import com.github.igrishaev.codec.IEncoder;
 import com.github.igrishaev.enums.Format;
-import com.github.igrishaev.enums.OID;
-import com.github.igrishaev.Payload;
 
+import java.util.List;
+
+/*
+ * Parameters are encoded right into the message by the
+ * encoders of the prepared statement, one per parameter;
+ * a null goes as NULL. There is either one format for all
+ * the parameters, or one per parameter; the same goes for
+ * the result columns.
+ */
 public record Bind (
         String portal,
         String statement,
-        byte[][] values,
-        OID[] OIDs,
-        Format paramsFormat,
-        Format columnFormat
+        List<Object> values,
+        IEncoder[] encoders,
+        Format[] paramsFormats,
+        Format[] columnFormats
 ) implements IMessage {
 
-    public ByteBuffer encode(String encoding) {
-        Payload payload = new Payload()
-                .addCString(portal)
-                .addCString(statement)
-                .addShort((short)1)
-                .addShort(paramsFormat.toCode())
-                .addUnsignedShort(values.length);
-
-        for (byte[] bytes: values) {
-            if (bytes == null) {
-                payload.addInteger(-1);
+    public void encode(MessageWriter writer) {
+        writer.begin('B')
+                .putCString(portal)
+                .putCString(statement)
+                .putUnsignedShort(paramsFormats.length);
+
+        for (Format format: paramsFormats) {
+            writer.putShort(format.toCode());
+        }
+
+        writer.putUnsignedShort(encoders.length);
+
+        for (int i = 0; i < encoders.length; i++) {
+            Object value = values.get(i);
+            if (value == null) {
+                writer.putInt(-1);
             }
             else {
-                payload.addInteger(bytes.length);
-                payload.addBytes(bytes);
+                encoders[i].encode(value, writer);
             }
         }
 
-        payload.addShort((short)1);
-        payload.addShort(columnFormat.toCode());
-
-        return payload.toByteBuffer('B');
+        writer.putUnsignedShort(columnFormats.length);
+        for (Format format: columnFormats) {
+            writer.putShort(format.toCode());
+        }
+        writer.end();
     }
 }
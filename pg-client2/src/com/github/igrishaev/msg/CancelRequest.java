@@ -1,18 +1,17 @@
 package com.github.igrishaev.msg;
 
-import java.nio.ByteBuffer;
+import com.github.igrishaev.MessageWriter;
 
 public record CancelRequest(
         int code,
         int pid,
         int secretKey) implements IMessage {
 
-    public ByteBuffer encode(String encoding) {
-        ByteBuffer buf = ByteBuffer.allocate(32);
-        buf.putInt(16);
-        buf.putInt(code);
-        buf.putInt(pid);
-        buf.putInt(secretKey);
-        return buf;
+    public void encode(MessageWriter writer) {
+        writer.begin()
+            .putInt(code)
+            .putInt(pid)
+            .putInt(secretKey)
+            .end();
     }
 }
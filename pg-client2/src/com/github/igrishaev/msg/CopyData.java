@@ -1,17 +1,24 @@
 package com.github.igrishaev.msg;
 
-import com.github.igrishaev.Payload;
+import com.github.igrishaev.MessageWriter;
 import java.nio.ByteBuffer;
 
-public record CopyData (byte[] bytes) implements IMessage {
-    // TODO: do not wrap into a BB
-    public ByteBuffer encode(String encoding) {
-        return new Payload()
-            .addBytes(bytes)
-            .toByteBuffer('d');
+// A big enough array is sent as is, with no copying: it must
+// not change until the writer is flushed.
+public record CopyData (byte[] bytes, int offset, int length) implements IMessage {
+
+    public CopyData(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    public void encode(MessageWriter writer) {
+        writer.begin('d')
+            .putBytes(bytes, offset, length)
+            .end();
     }
 
+    // No copying: the bytes belong to the reader's buffer.
     public static CopyData fromByteBuffer(ByteBuffer buf) {
-        return new CopyData(buf.array());
+        return new CopyData(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
     }
 }
@@ -1,11 +1,9 @@
 package com.github.igrishaev.msg;
 
-import com.github.igrishaev.Payload;
-
-import java.nio.ByteBuffer;
+import com.github.igrishaev.MessageWriter;
 
 public record CopyDone () implements IMessage {
-    public ByteBuffer encode(String encoding) {
-        return new Payload().toByteBuffer('c');
+    public void encode(MessageWriter writer) {
+        writer.begin('c').end();
     }
 }
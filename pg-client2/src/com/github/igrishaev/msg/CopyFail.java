@@ -1,13 +1,11 @@
 package com.github.igrishaev.msg;
 
-import com.github.igrishaev.Payload;
-
-import java.nio.ByteBuffer;
+import com.github.igrishaev.MessageWriter;
 
 public record CopyFail (String errorMessage) implements IMessage {
-    public ByteBuffer encode(String encoding) {
-        return new Payload()
-            .addCString(errorMessage, encoding)
-            .toByteBuffer('f');
+    public void encode(MessageWriter writer) {
+        writer.begin('f')
+            .putCString(errorMessage)
+            .end();
     }
 }
@@ -1,15 +1,13 @@
 package com.github.igrishaev.msg;
 
-import com.github.igrishaev.Payload;
+import com.github.igrishaev.MessageWriter;
 import com.github.igrishaev.enums.SourceType;
 
-import java.nio.ByteBuffer;
-
 public record Describe(SourceType sourceType, String source) implements IMessage {
-    public ByteBuffer encode(String encoding) {
-        return new Payload()
-                .addByte((byte)sourceType.getCode())
-                .addCString(source, encoding)
-                .toByteBuffer('D');
+    public void encode(MessageWriter writer) {
+        writer.begin('D')
+                .putByte((byte)sourceType.getCode())
+                .putCString(source)
+                .end();
     }
 }
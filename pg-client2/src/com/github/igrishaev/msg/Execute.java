@@ -1,10 +1,8 @@
 package com.github.igrishaev.msg;
 
 import com.github.igrishaev.Const;
+import com.github.igrishaev.MessageWriter;
 import com.github.igrishaev.PGError;
-import com.github.igrishaev.Payload;
-
-import java.nio.ByteBuffer;
 
 public record Execute (String portal, long rowCount) implements IMessage {
     public Execute (String portal, long rowCount) {
@@ -14,10 +12,10 @@ public record Execute (String portal, long rowCount) implements IMessage {
             throw new PGError("Too many rows: %s", rowCount);
         }
     }
-    public ByteBuffer encode(String encoding) {
-        return new Payload()
-            .addCString(portal, encoding)
-            .addUnsignedInteger(rowCount)
-            .toByteBuffer('E');
+    public void encode(MessageWriter writer) {
+        writer.begin('E')
+            .putCString(portal)
+            .putUnsignedInteger(rowCount)
+            .end();
     }
 }
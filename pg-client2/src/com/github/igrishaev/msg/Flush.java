@@ -1,12 +1,10 @@
 package com.github.igrishaev.msg;
 
-import com.github.igrishaev.Payload;
-
-import java.nio.ByteBuffer;
+import com.github.igrishaev.MessageWriter;
 
 public record Flush () implements IMessage {
-    public ByteBuffer encode(String encoding) {
-        return new Payload().toByteBuffer('H');
+    public void encode(MessageWriter writer) {
+        writer.begin('H').end();
     }
 
 }
@@ -1,7 +1,7 @@
 package com.github.igrishaev.msg;
 
-import java.nio.ByteBuffer;
+import com.github.igrishaev.MessageWriter;
 
 public interface IMessage {
-    ByteBuffer encode(String encoding);
+    void encode(MessageWriter writer);
 }
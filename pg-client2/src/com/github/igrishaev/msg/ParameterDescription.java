@@ -4,17 +4,21 @@ import com.github.igrishaev.enums.OID;
 
 import java.nio.ByteBuffer;
 
+// An OID is null for a type that's not built in; typeOids keeps the codes.
 public record ParameterDescription (
         int paramCount,
+        int[] typeOids,
         OID[] OIDs
 ) {
 
     public static ParameterDescription fromByteBuffer(ByteBuffer buf) {
         int count = Short.toUnsignedInt(buf.getShort());
+        int[] typeOids = new int[count];
         OID[] OIDs = new OID[count];
         for (int i = 0; i < count; i++) {
-            OIDs[i] = OID.ofInt(buf.getInt());
+            typeOids[i] = buf.getInt();
+            OIDs[i] = OID.ofIntOrNull(typeOids[i]);
         }
-        return new ParameterDescription(count, OIDs);
+        return new ParameterDescription(count, typeOids, OIDs);
     }
 }
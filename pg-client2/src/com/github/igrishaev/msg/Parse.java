@@ -1,10 +1,9 @@
 package com.github.igrishaev.msg;
 
+import com.github.igrishaev.MessageWriter;
 import com.github.igrishaev.enums.OID;
 import com.github.igrishaev.PGError;
-import com.github.igrishaev.Payload;
 
-import java.nio.ByteBuffer;
 import java.util.List;
 
 public record Parse (String statement,
@@ -12,7 +11,7 @@ public record Parse (String statement,
                      List<OID> OIDs)
         implements IMessage {
 
-    public ByteBuffer encode(String encoding) {
+    public void encode(MessageWriter writer) {
 
         int OIDCount = OIDs.size();
 
@@ -23,14 +22,16 @@ public record Parse (String statement,
             );
         }
 
-        Payload payload = new Payload();
+        writer.begin('P')
+            .putCString(statement)
+            .putCString(query)
+            .putUnsignedShort(OIDCount);
 
-        payload
-            .addCString(statement, encoding)
-            .addCString(query, encoding)
-            .addUnsignedShort(OIDCount);
+        for (OID oid: OIDs) {
+            writer.putInt(oid.toInt());
+        }
 
-        return payload.toByteBuffer('P');
+        writer.end();
     }
 
 }
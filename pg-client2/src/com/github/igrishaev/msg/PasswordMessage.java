@@ -1,13 +1,11 @@
 package com.github.igrishaev.msg;
 
-import com.github.igrishaev.Payload;
-
-import java.nio.ByteBuffer;
+import com.github.igrishaev.MessageWriter;
 
 public record PasswordMessage (String password) implements IMessage {
-    public ByteBuffer encode(String encoding) {
-        return new Payload()
-            .addCString(password, encoding)
-            .toByteBuffer('p');
+    public void encode(MessageWriter writer) {
+        writer.begin('p')
+            .putCString(password)
+            .end();
     }
 }
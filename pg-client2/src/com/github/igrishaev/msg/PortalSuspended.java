@@ -0,0 +1,3 @@
+package com.github.igrishaev.msg;
+
+public record PortalSuspended () {}
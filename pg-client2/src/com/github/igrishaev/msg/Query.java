@@ -1,14 +1,11 @@
 package com.github.igrishaev.msg;
 
-import com.github.igrishaev.Payload;
-import com.github.igrishaev.msg.IMessage;
-
-import java.nio.ByteBuffer;
+import com.github.igrishaev.MessageWriter;
 
 public record Query (String query) implements IMessage {
-    public ByteBuffer encode(String encoding) {
-        return new Payload()
-            .addCString(query, encoding)
-            .toByteBuffer('Q');
+    public void encode(MessageWriter writer) {
+        writer.begin('Q')
+            .putCString(query)
+            .end();
     }
 }
@@ -16,10 +16,15 @@ public record RowDescription (
             String name,
             int tableOid,
             int columnOid,
-            OID typeOid,
+            int typeOid,
             short typeLen,
             int typeMod,
             Format format) {
+
+        // Null for a type that's not built in.
+        public OID oid() {
+            return OID.ofIntOrNull(typeOid);
+        }
     }
 
     public static RowDescription fromByteBuffer(ByteBuffer buf) {
@@ -30,7 +35,7 @@ public record RowDescription (
                     BBTool.getCString(buf, "UTF-8"),
                     buf.getInt(),
                     buf.getShort(),
-                    OID.ofInt(buf.getInt()),
+                    buf.getInt(),
                     buf.getShort(),
                     buf.getInt(),
                     Format.ofShort(buf.getShort()));
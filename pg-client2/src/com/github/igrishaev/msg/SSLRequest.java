@@ -1,11 +1,11 @@
 package com.github.igrishaev.msg;
 
-import com.github.igrishaev.msg.IMessage;
-
-import java.nio.ByteBuffer;
+import com.github.igrishaev.MessageWriter;
 
 public record SSLRequest (int sslCode) implements IMessage {
-    public ByteBuffer encode(String encoding) {
-        return ByteBuffer.allocate(8).putInt(8).putInt(sslCode);
+    public void encode(MessageWriter writer) {
+        writer.begin()
+            .putInt(sslCode)
+            .end();
     }
 }
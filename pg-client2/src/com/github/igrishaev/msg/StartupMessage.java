@@ -1,9 +1,7 @@
 package com.github.igrishaev.msg;
 
-import com.github.igrishaev.Payload;
-import com.github.igrishaev.msg.IMessage;
+import com.github.igrishaev.MessageWriter;
 
-import java.nio.ByteBuffer;
 import java.util.Map;
 
 public record StartupMessage (Integer protocolVersion,
@@ -11,19 +9,18 @@ public record StartupMessage (Integer protocolVersion,
                               String database,
                               Map<String, String> options
 ) implements IMessage {
-    public ByteBuffer encode(String encoding) {
-        Payload payload = new Payload();
-        payload
-            .addInteger(protocolVersion)
-            .addCString("user")
-            .addCString(user, encoding)
-            .addCString("database")
-            .addCString(database, encoding);
+    public void encode(MessageWriter writer) {
+        writer.begin()
+            .putInt(protocolVersion)
+            .putCString("user")
+            .putCString(user)
+            .putCString("database")
+            .putCString(database);
         for (Map.Entry<String, String> entry: options.entrySet()) {
-            payload.addCString(entry.getKey(), encoding);
-            payload.addCString(entry.getValue(), encoding);
+            writer.putCString(entry.getKey());
+            writer.putCString(entry.getValue());
         }
-        payload.addByte((byte)0);
-        return payload.toByteBuffer();
+        writer.putByte((byte)0);
+        writer.end();
     }
 }
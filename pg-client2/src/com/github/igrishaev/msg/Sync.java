@@ -1,12 +1,9 @@
 package com.github.igrishaev.msg;
 
-import com.github.igrishaev.Payload;
-import com.github.igrishaev.msg.IMessage;
-
-import java.nio.ByteBuffer;
+import com.github.igrishaev.MessageWriter;
 
 public record Sync () implements IMessage {
-    public ByteBuffer encode(String encoding) {
-        return new Payload().toByteBuffer('S');
+    public void encode(MessageWriter writer) {
+        writer.begin('S').end();
     }
 }
@@ -0,0 +1,399 @@
+package com.github.igrishaev.reducer;
+
+import clojure.lang.IObj;
+import clojure.lang.IPersistentMap;
+import clojure.lang.ITransientMap;
+import clojure.lang.Keyword;
+import clojure.lang.PersistentHashMap;
+import com.github.igrishaev.PGError;
+import com.github.igrishaev.codec.DecoderBin;
+import com.github.igrishaev.codec.IDecoder;
+import com.github.igrishaev.enums.Format;
+import com.github.igrishaev.enums.OID;
+import com.github.igrishaev.msg.DataRow;
+import com.github.igrishaev.msg.RowDescription;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/*
+ * Collects a result into columns rather than rows. Integers,
+ * floats and booleans go into primitive arrays (long[], int[],
+ * double[], boolean[]) with no boxing; binary values are read
+ * straight from the DataRow unless a decoder of one's own is
+ * registered. Other types land into Object[].
+ * Any other value is decoded; when a custom decoder returns
+ * something else than the column type, the column falls back
+ * to Object[] with the values so far boxed.
+ * The result is a map of key => array; its metadata carries
+ * the row count and, for primitive columns having NULLs, a
+ * BitSet of the null rows: {:count n :nulls {key bitset}}.
+ */
+public class Columnar extends MapMixin implements IRowReducer {
+
+    private static final int INITIAL_SIZE = 64;
+
+    private static final Keyword KW_COUNT = Keyword.intern("count");
+    private static final Keyword KW_NULLS = Keyword.intern("nulls");
+
+    private static abstract class Column {
+
+        final OID oid;
+        final Format format;
+        final IDecoder decoder;
+        // A built-in binary decoder: read the value as is.
+        final boolean raw;
+        BitSet nulls;
+
+        Column(RowDescription.Column col, IDecoder decoder) {
+            this.oid = col.oid();
+            this.format = col.format();
+            this.decoder = decoder;
+            this.raw = format == Format.BIN && decoder == DecoderBin.primitive(oid);
+        }
+
+        Column(Column other) {
+            this.oid = other.oid;
+            this.format = other.format;
+            this.decoder = other.decoder;
+            this.raw = other.raw;
+        }
+
+        Object decode(ByteBuffer buf) {
+            return decoder.decode(buf);
+        }
+
+        boolean isPrimitive() {
+            return true;
+        }
+
+        void setNull(int row) {
+            if (nulls == null) {
+                nulls = new BitSet();
+            }
+            nulls.set(row);
+        }
+
+        // The column to go on with: this one or a fallback.
+        abstract Column set(int row, ByteBuffer buf);
+        abstract void grow(int capacity);
+        abstract int capacity();
+        abstract Object get(int row);
+        abstract Object toArray(int count);
+
+        Column fallback(int row, Object x) {
+            ObjectColumn column = new ObjectColumn(this, capacity());
+            for (int i = 0; i < row; i++) {
+                if (nulls == null || !nulls.get(i)) {
+                    column.values[i] = get(i);
+                }
+            }
+            column.values[row] = x;
+            return column;
+        }
+    }
+
+    private static class LongColumn extends Column {
+
+        long[] values;
+
+        LongColumn(RowDescription.Column col, IDecoder decoder) {
+            super(col, decoder);
+            values = new long[INITIAL_SIZE];
+        }
+
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        Column set(int row, ByteBuffer buf) {
+            if (raw) {
+                values[row] = buf.getLong(buf.position());
+                return this;
+            }
+            Object x = decode(buf);
+            if (x instanceof Long l) {
+                values[row] = l;
+                return this;
+            }
+            return fallback(row, x);
+        }
+
+        int capacity() {
+            return values.length;
+        }
+
+        Object get(int row) {
+            return values[row];
+        }
+
+        Object toArray(int count) {
+            return Arrays.copyOf(values, count);
+        }
+    }
+
+    private static class IntColumn extends Column {
+
+        int[] values;
+
+        IntColumn(RowDescription.Column col, IDecoder decoder) {
+            super(col, decoder);
+            values = new int[INITIAL_SIZE];
+        }
+
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        Column set(int row, ByteBuffer buf) {
+            if (raw) {
+                values[row] = oid == OID.INT2
+                        ? buf.getShort(buf.position())
+                        : buf.getInt(buf.position());
+                return this;
+            }
+            Object x = decode(buf);
+            if (x instanceof Integer i) {
+                values[row] = i;
+                return this;
+            }
+            if (x instanceof Short s) {
+                values[row] = s;
+                return this;
+            }
+            return fallback(row, x);
+        }
+
+        int capacity() {
+            return values.length;
+        }
+
+        Object get(int row) {
+            return oid == OID.INT2 ? (Object) (short) values[row] : (Object) values[row];
+        }
+
+        Object toArray(int count) {
+            return Arrays.copyOf(values, count);
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+
+        double[] values;
+
+        DoubleColumn(RowDescription.Column col, IDecoder decoder) {
+            super(col, decoder);
+            values = new double[INITIAL_SIZE];
+        }
+
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        Column set(int row, ByteBuffer buf) {
+            if (raw) {
+                values[row] = oid == OID.FLOAT4
+                        ? buf.getFloat(buf.position())
+                        : buf.getDouble(buf.position());
+                return this;
+            }
+            Object x = decode(buf);
+            if (x instanceof Double d) {
+                values[row] = d;
+                return this;
+            }
+            if (x instanceof Float f) {
+                values[row] = f;
+                return this;
+            }
+            return fallback(row, x);
+        }
+
+        int capacity() {
+            return values.length;
+        }
+
+        Object get(int row) {
+            return oid == OID.FLOAT4 ? (Object) (float) values[row] : (Object) values[row];
+        }
+
+        Object toArray(int count) {
+            return Arrays.copyOf(values, count);
+        }
+    }
+
+    private static class BooleanColumn extends Column {
+
+        boolean[] values;
+
+        BooleanColumn(RowDescription.Column col, IDecoder decoder) {
+            super(col, decoder);
+            values = new boolean[INITIAL_SIZE];
+        }
+
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        Column set(int row, ByteBuffer buf) {
+            if (raw) {
+                values[row] = buf.get(buf.position()) != 0;
+                return this;
+            }
+            Object x = decode(buf);
+            if (x instanceof Boolean b) {
+                values[row] = b;
+                return this;
+            }
+            return fallback(row, x);
+        }
+
+        int capacity() {
+            return values.length;
+        }
+
+        Object get(int row) {
+            return values[row];
+        }
+
+        Object toArray(int count) {
+            return Arrays.copyOf(values, count);
+        }
+    }
+
+    private static class ObjectColumn extends Column {
+
+        Object[] values;
+
+        ObjectColumn(RowDescription.Column col, IDecoder decoder) {
+            super(col, decoder);
+            values = new Object[INITIAL_SIZE];
+        }
+
+        ObjectColumn(Column other, int capacity) {
+            super(other);
+            values = new Object[capacity];
+        }
+
+        boolean isPrimitive() {
+            return false;
+        }
+
+        void setNull(int row) {
+            values[row] = null;
+        }
+
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        Column set(int row, ByteBuffer buf) {
+            values[row] = decode(buf);
+            return this;
+        }
+
+        int capacity() {
+            return values.length;
+        }
+
+        Object get(int row) {
+            return values[row];
+        }
+
+        Object toArray(int count) {
+            return Arrays.copyOf(values, count);
+        }
+    }
+
+    private static class Columns {
+        Object[] keys;
+        Column[] columns;
+        int count;
+        int capacity;
+    }
+
+    private static Column makeColumn(RowDescription.Column col, IDecoder decoder) {
+        return switch (col.oid()) {
+            case INT8 -> new LongColumn(col, decoder);
+            case INT2, INT4 -> new IntColumn(col, decoder);
+            case FLOAT4, FLOAT8 -> new DoubleColumn(col, decoder);
+            case BOOL -> new BooleanColumn(col, decoder);
+            case null, default -> new ObjectColumn(col, decoder);
+        };
+    }
+
+    public Object initiate() {
+        return new Columns();
+    }
+
+    public Object describe(Object acc,
+                           RowDescription rowDescription,
+                           Object[] keys,
+                           IDecoder[] decoders) {
+        Columns columns = (Columns) acc;
+        RowDescription.Column[] cols = rowDescription.columns();
+        columns.keys = keys;
+        columns.columns = new Column[cols.length];
+        for (int i = 0; i < cols.length; i++) {
+            columns.columns[i] = makeColumn(cols[i], decoders[i]);
+        }
+        columns.count = 0;
+        columns.capacity = INITIAL_SIZE;
+        return columns;
+    }
+
+    public Object appendRow(Object acc, DataRow dataRow) {
+        Columns columns = (Columns) acc;
+        int row = columns.count;
+        if (row == columns.capacity) {
+            int capacity = columns.capacity * 2;
+            for (Column column: columns.columns) {
+                column.grow(capacity);
+            }
+            columns.capacity = capacity;
+        }
+        ByteBuffer[] bufs = dataRow.values();
+        for (int i = 0; i < bufs.length; i++) {
+            ByteBuffer buf = bufs[i];
+            if (buf == null) {
+                columns.columns[i].setNull(row);
+            }
+            else {
+                columns.columns[i] = columns.columns[i].set(row, buf);
+            }
+        }
+        columns.count++;
+        return columns;
+    }
+
+    public Object compose(Object[] keys, Object[] vals) {
+        return vals;
+    }
+
+    public Object append(Object acc, Object row) {
+        throw new PGError("the columnar reducer accepts raw data rows only");
+    }
+
+    public Object finalize(Object acc) {
+        Columns columns = (Columns) acc;
+        if (columns.columns == null) {
+            return PersistentHashMap.EMPTY;
+        }
+        ITransientMap map = PersistentHashMap.EMPTY.asTransient();
+        ITransientMap nulls = PersistentHashMap.EMPTY.asTransient();
+        for (int i = 0; i < columns.columns.length; i++) {
+            Column column = columns.columns[i];
+            Object key = columns.keys[i];
+            map = map.assoc(key, column.toArray(columns.count));
+            if (column.isPrimitive() && column.nulls != null) {
+                nulls = nulls.assoc(key, column.nulls);
+            }
+        }
+        IPersistentMap meta = PersistentHashMap.create(
+                KW_COUNT, columns.count,
+                KW_NULLS, nulls.persistent()
+        );
+        return ((IObj) map.persistent()).withMeta(meta);
+    }
+}
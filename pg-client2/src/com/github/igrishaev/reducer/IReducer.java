@@ -7,4 +7,10 @@ public interface IReducer {
     Object initiate();
     Object append(Object acc, Object row);
     Object finalize(Object acc);
+
+    // Whether rows are maps by the keys, as MapMixin composes
+    // them, so that a LazyRow may stand for a row.
+    default boolean supportsLazyRows() {
+        return false;
+    }
 }
@@ -0,0 +1,19 @@
+package com.github.igrishaev.reducer;
+
+import com.github.igrishaev.codec.IDecoder;
+import com.github.igrishaev.msg.DataRow;
+import com.github.igrishaev.msg.RowDescription;
+
+/*
+ * A reducer that takes raw DataRow messages rather than
+ * composed rows, so it can decode the values as it wants.
+ * The bytes of a DataRow are valid only during the call.
+ * The decoders are resolved per column in advance.
+ */
+public interface IRowReducer extends IReducer {
+    Object describe(Object acc,
+                    RowDescription rowDescription,
+                    Object[] keys,
+                    IDecoder[] decoders);
+    Object appendRow(Object acc, DataRow dataRow);
+}
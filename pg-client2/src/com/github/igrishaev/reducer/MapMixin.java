@@ -19,5 +19,8 @@ public abstract class MapMixin implements IReducer {
         }
         return map.persistent();
     }
+    public boolean supportsLazyRows() {
+        return true;
+    }
 
 }
@@ -11,6 +11,11 @@ public class Matrix extends MapMixin implements IReducer {
         return PersistentVector.create(vals);
     }
 
+    @Override
+    public boolean supportsLazyRows() {
+        return false;
+    }
+
     public Object initiate() {
         return PersistentVector.EMPTY.asTransient();
     }
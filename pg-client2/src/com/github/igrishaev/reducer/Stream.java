@@ -0,0 +1,140 @@
+package com.github.igrishaev.reducer;
+
+import com.github.igrishaev.PGError;
+
+import java.util.concurrent.Flow;
+
+/*
+ * Hands each row to a Flow.Subscriber as soon as it's
+ * decoded, nothing is accumulated. When the subscriber
+ * has no demand, append() blocks: the connection stops
+ * reading the socket, and the server gets throttled by
+ * TCP. After cancel(), the rest of the rows are dropped.
+ * Rows are composed by the wrapped reducer.
+ *
+ * An exception in onNext(), an interrupt while waiting
+ * for demand, or a non-positive request() is kept, and the
+ * rest of the rows are dropped too: the result is read to
+ * the end so the connection stays in sync, and only then the
+ * error is raised. The reading thread signals it in onError()
+ * as the only terminal signal, never request() itself.
+ */
+public class Stream implements IReducer, Flow.Subscription {
+
+    private final Flow.Subscriber<Object> subscriber;
+    private final IReducer reducer;
+    private long demand;
+    private boolean isCancelled;
+    private Throwable error;
+    private boolean isInterrupted;
+
+    public Stream(Flow.Subscriber<Object> subscriber, IReducer reducer) {
+        this.subscriber = subscriber;
+        this.reducer = reducer;
+        this.demand = 0;
+        this.isCancelled = false;
+    }
+
+    public synchronized void request(long n) {
+        if (n <= 0) {
+            setError(new IllegalArgumentException(
+                    String.format("non-positive request: %s", n)
+            ));
+            notifyAll();
+            return;
+        }
+        demand += n;
+        if (demand < 0) {
+            demand = Long.MAX_VALUE;
+        }
+        notifyAll();
+    }
+
+    public synchronized void cancel() {
+        isCancelled = true;
+        notifyAll();
+    }
+
+    public synchronized boolean isCancelled() {
+        return isCancelled;
+    }
+
+    private synchronized boolean awaitDemand() {
+        while (demand == 0 && !isCancelled && error == null) {
+            try {
+                wait();
+            }
+            catch (InterruptedException e) {
+                // Not restored at once: an interrupt would close
+                // the socket channel while the rest is read.
+                isInterrupted = true;
+                throw new PGError(e, "interrupted while waiting for demand");
+            }
+        }
+        if (isCancelled || error != null) {
+            return false;
+        }
+        if (demand != Long.MAX_VALUE) {
+            demand--;
+        }
+        return true;
+    }
+
+    // The first error wins.
+    private synchronized void setError(Throwable e) {
+        if (error == null) {
+            error = e;
+        }
+    }
+
+    public synchronized Throwable getError() {
+        return error;
+    }
+
+    public synchronized void restoreInterrupt() {
+        if (isInterrupted) {
+            isInterrupted = false;
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String[] unifyKeys(String[] keys) {
+        return reducer.unifyKeys(keys);
+    }
+
+    public Object transformKey(String key) {
+        return reducer.transformKey(key);
+    }
+
+    public Object compose(Object[] keys, Object[] vals) {
+        return reducer.compose(keys, vals);
+    }
+
+    public boolean supportsLazyRows() {
+        return reducer.supportsLazyRows();
+    }
+
+    public Object initiate() {
+        return 0L;
+    }
+
+    public Object append(Object acc, Object row) {
+        if (getError() != null) {
+            return acc;
+        }
+        try {
+            if (awaitDemand()) {
+                subscriber.onNext(row);
+                return (Long) acc + 1;
+            }
+        }
+        catch (Throwable e) {
+            setError(e);
+        }
+        return acc;
+    }
+
+    public Object finalize(Object acc) {
+        return acc;
+    }
+}
@@ -21,7 +21,7 @@ public class BBTool {
         skip(buf, len + 1);
 
         try {
-            return new String(buf.array(), pos, len, encoding);
+            return new String(buf.array(), buf.arrayOffset() + pos, len, encoding);
         }
         catch (UnsupportedEncodingException e) {
             throw new PGError(e, "cannot decode a C-string");
@@ -35,7 +35,7 @@ public class BBTool {
 
     public static String getRestString (ByteBuffer buf) {
         return new String(buf.array(),
-                          buf.position(),
+                          buf.arrayOffset() + buf.position(),
                           buf.remaining(),
                 StandardCharsets.UTF_8);
     }
@@ -0,0 +1,37 @@
+package com.github.igrishaev.util;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Postgres encoding names to Java charsets, shared by the
+ * message writer and the codecs. Most names work in Java as
+ * they are or as aliases (UTF8, LATIN1, EUC_JP); WIN* are
+ * windows-*, KOI8R is KOI8-R. SQL_ASCII is no encoding at all, and a name Java
+ * doesn't know can't be helped either: both get ISO-8859-1,
+ * which keeps the bytes as they are, one char per byte, rather
+ * than failing the connection on startup.
+ */
+public final class Encoding {
+
+    private Encoding() {}
+
+    public static Charset toCharset (String encoding) {
+        if (encoding.equals("SQL_ASCII")) {
+            return StandardCharsets.ISO_8859_1;
+        }
+        String name = encoding;
+        if (encoding.startsWith("WIN")) {
+            name = "windows-" + encoding.substring(3);
+        }
+        else if (encoding.startsWith("KOI8")) {
+            name = "KOI8-" + encoding.substring(4);
+        }
+        try {
+            return Charset.forName(name);
+        }
+        catch (IllegalArgumentException e) {
+            return StandardCharsets.ISO_8859_1;
+        }
+    }
+}
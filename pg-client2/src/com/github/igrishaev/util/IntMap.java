@@ -0,0 +1,91 @@
+package com.github.igrishaev.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/*
+ * A map of int keys with open addressing and linear probing,
+ * so that a lookup boxes nothing. Values cannot be null.
+ * No removal; not thread-safe.
+ */
+public class IntMap<V> {
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    public IntMap() {
+        this(8);
+    }
+
+    public IntMap(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 4) * 2 - 1) * 2;
+        this.keys = new int[size];
+        this.values = new Object[size];
+    }
+
+    private static int index(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int mask = keys.length - 1;
+        int i = index(key, mask);
+        Object value;
+        while ((value = values[i]) != null) {
+            if (keys[i] == key) {
+                return (V) value;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    public void put(int key, V value) {
+        Objects.requireNonNull(value);
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int i = index(key, mask);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    private void grow() {
+        int[] keysOld = keys;
+        Object[] valuesOld = values;
+        keys = new int[keysOld.length * 2];
+        values = new Object[keysOld.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < keysOld.length; j++) {
+            if (valuesOld[j] != null) {
+                int i = index(keysOld[j], mask);
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = keysOld[j];
+                values[i] = valuesOld[j];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+}
@@ -64,10 +64,7 @@ public class JSON {
 
     public static Object readValueBinary (ByteBuffer buf) {
         byte b = buf.get();
-        if (b == 1) {
-            buf.limit(buf.limit() - 1);
-        }
-        else {
+        if (b != 1) {
             buf.position(buf.position() - 1);
         }
         return readValue(buf);
@@ -75,7 +72,7 @@ public class JSON {
 
     public static Object readValue (ByteBuffer buf) {
         int offset = buf.arrayOffset() + buf.position();
-        int len = buf.limit();
+        int len = buf.remaining();
         try {
             return mapper.readValue(buf.array(), offset, len, Object.class);
         } catch (IOException e) {
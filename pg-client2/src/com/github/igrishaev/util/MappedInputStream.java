@@ -0,0 +1,68 @@
+package com.github.igrishaev.util;
+
+import com.github.igrishaev.PGError;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Reads a range of a file through memory mappings, a window
+ * at a time, so a range may be larger than a single mapping
+ * allows. Many streams may share the same channel.
+ */
+public class MappedInputStream extends InputStream {
+
+    private static final long WINDOW_SIZE = 0x4000000;
+
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+    private MappedByteBuffer window;
+
+    public MappedInputStream(FileChannel channel, long start, long end) {
+        this.channel = channel;
+        this.position = start;
+        this.end = end;
+    }
+
+    private boolean nextWindow() {
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+        if (position >= end) {
+            return false;
+        }
+        long size = Math.min(WINDOW_SIZE, end - position);
+        try {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        }
+        catch (IOException e) {
+            throw new PGError(e, "could not map %s byte(s) at %s", size, position);
+        }
+        position += size;
+        return true;
+    }
+
+    public int read() {
+        return nextWindow() ? window.get() & 0xFF : -1;
+    }
+
+    public int read(byte[] bytes, int offset, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextWindow()) {
+            return -1;
+        }
+        int n = Math.min(len, window.remaining());
+        window.get(bytes, offset, n);
+        return n;
+    }
+
+    public int available() {
+        long rest = end - position + (window == null ? 0 : window.remaining());
+        return (int) Math.min(rest, Integer.MAX_VALUE);
+    }
+}
@@ -2,6 +2,10 @@ package com.github.igrishaev.util;
 
 import com.github.igrishaev.enums.TxLevel;
 
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 public class SQL {
 
     public static String quoteChannel (String sql) {
@@ -14,6 +18,30 @@ public class SQL {
         return String.format("SET TRANSACTION ISOLATION LEVEL %s", level.getCode());
     }
 
+    private static final Pattern COPY_CSV = Pattern.compile("\\bcsv\\b");
+
+    // What changes the layout of text or CSV COPY data.
+    private static final Pattern COPY_LAYOUT = Pattern.compile(
+            "\\b(delimiter|null|default|quote|escape|header|force_quote|force_not_null|force_null|encoding)\\b");
+
+    // The options of COPY ... TO STDOUT: what follows the last
+    // STDOUT, lower-cased; empty when there is none.
+    public static String copyOutOptions (String sql) {
+        String lower = sql.toLowerCase(Locale.ROOT);
+        int i = lower.lastIndexOf("stdout");
+        return i == -1 ? "" : lower.substring(i + "stdout".length());
+    }
+
+    public static boolean isCopyCSV (String options) {
+        return COPY_CSV.matcher(options).find();
+    }
+
+    // The first option that changes the layout, or null.
+    public static String copyLayoutOption (String options) {
+        Matcher matcher = COPY_LAYOUT.matcher(options);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
     public static void main (String[] args) {
         System.out.println(quoteChannel("aa\"a'aa"));
     }
@@ -1,18 +1,33 @@
 (ns pg.client
   (:import
+   java.io.File
    java.io.Writer
+   java.io.InputStream
    java.io.OutputStream
+   java.nio.channels.ReadableByteChannel
+   java.nio.channels.WritableByteChannel
    java.util.UUID
    java.util.Map
    java.util.List
+   java.util.concurrent.Flow$Subscriber
+   java.util.function.Function
+   java.nio.ByteBuffer
+   java.nio.file.Path
    clojure.lang.Keyword
+   com.github.igrishaev.codec.IDecoder
+   com.github.igrishaev.codec.TypeCatalog
    com.github.igrishaev.reducer.IReducer
    com.github.igrishaev.Connection
+   com.github.igrishaev.CopyLoader
+   com.github.igrishaev.CopyLoader$Report
+   com.github.igrishaev.Cursor
    com.github.igrishaev.ExecuteParams
    com.github.igrishaev.ExecuteParams$Builder
    com.github.igrishaev.PreparedStatement
    com.github.igrishaev.Config$Builder
    com.github.igrishaev.Result
+   com.github.igrishaev.enums.Format
+   com.github.igrishaev.enums.OID
    com.github.igrishaev.enums.TXStatus
    com.github.igrishaev.enums.TxLevel))
 
@@ -22,7 +37,9 @@
   (let [{:keys [params
                 oids
                 row-count
-                reducer]}
+                reducer
+                lazy-rows?
+                dedup-strings?]}
         config]
 
     (cond-> (new ExecuteParams$Builder)
@@ -39,6 +56,12 @@
       row-count
       (.rowCount row-count)
 
+      (some? lazy-rows?)
+      (.lazyRows lazy-rows?)
+
+      (some? dedup-strings?)
+      (.dedupStrings dedup-strings?)
+
       :finally
       (.build))))
 
@@ -55,12 +78,17 @@
                 pg-params
                 binary-encode?
                 binary-decode?
+                primitive-arrays?
                 in-stream-buf-size
                 out-stream-buf-size
                 fn-notification
                 fn-protocol-version
                 fn-notice
-                use-ssl?]}
+                use-ssl?
+                keep-alive?
+                tcp-no-delay?
+                statement-cache-size
+                type-catalog]}
         params]
 
     (cond-> (new Config$Builder user database)
@@ -86,6 +114,9 @@
       (some? binary-decode?)
       (.binaryDecode binary-decode?)
 
+      (some? primitive-arrays?)
+      (.primitiveArrays primitive-arrays?)
+
       in-stream-buf-size
       (.inStreamBufSize in-stream-buf-size)
 
@@ -95,6 +126,18 @@
       (some? use-ssl?)
       (.useSSL use-ssl?)
 
+      (some? keep-alive?)
+      (.SOKeepAlive keep-alive?)
+
+      (some? tcp-no-delay?)
+      (.SOTCPnoDelay tcp-no-delay?)
+
+      statement-cache-size
+      (.statementCacheSize statement-cache-size)
+
+      type-catalog
+      (.typeCatalog type-catalog)
+
       fn-notification
       (.fnNotification fn-notification)
 
@@ -161,6 +204,82 @@
   (.getCreatedAt conn))
 
 
+(defn statement-cache-stats
+  "
+  Hits, misses and the current size of the connection's
+  prepared statement cache (see :statement-cache-size).
+  "
+  [^Connection conn]
+  {:hits (.getStatementCacheHits conn)
+   :misses (.getStatementCacheMisses conn)
+   :size (.getStatementCacheSize conn)})
+
+
+(defn string-cache-stats
+  "
+  Hits and misses of the string caches
+  (see :dedup-strings?) over all the results so far.
+  "
+  [^Connection conn]
+  {:hits (.getStringCacheHits conn)
+   :misses (.getStringCacheMisses conn)})
+
+
+(defn register-decoder
+  "
+  Set a function that decodes values of the given type
+  in the given format (:txt or :bin). The type is either
+  an OID or the name of a type that's not built in, e.g.
+  \"citext\" or an enum. The function takes a ByteBuffer
+  with the raw value, never a NULL one. Applies to the
+  results that come after.
+  "
+  [^Connection conn oid-or-name format decode]
+  (let [fmt (case format
+              :txt Format/TXT
+              :bin Format/BIN)
+        decoder (reify IDecoder
+                  (decode [_ buf]
+                    (decode buf)))]
+    (if (string? oid-or-name)
+      (.registerDecoder conn ^String oid-or-name fmt decoder)
+      (.registerDecoder conn ^OID oid-or-name fmt decoder))))
+
+
+
+(defn register-encoder
+  "
+  Set a function that turns a parameter of a type that's
+  not built in (e.g. \"hstore\" or an enum) into a string,
+  the text the server parses. Takes the name of the type;
+  one set for a domain goes before one for its base type.
+  Never called with nil.
+  "
+  [^Connection conn ^String type-name encode]
+  (.registerEncoder conn
+                    type-name
+                    (reify Function
+                      (apply [_ x]
+                        (encode x)))))
+
+(defn type-catalog
+  "
+  A type catalog to share between connections to the same
+  database (see :type-catalog), so pg_type is loaded once.
+  "
+  ^TypeCatalog []
+  (new TypeCatalog))
+
+
+(defn load-types
+  "
+  Reload the types of the database, e.g. after creating
+  a new one. Returns their number.
+  "
+  [^Connection conn]
+  (.loadTypes conn))
+
+
 (defn close-statement
   [^Connection conn ^PreparedStatement stmt]
   (.closeStatement conn stmt))
@@ -214,6 +333,28 @@
     (.executeStatement conn stmt (->execute-params params)))))
 
 
+(defn execute-batch
+  "
+  Execute a prepared statement for each vector of parameters
+  in a single round trip. Return a vector of processed row
+  counts, one per item. Should an item fail, nothing gets
+  committed and the exception has ex-data with the :index of
+  the item, the :error fields of the server (none when the item
+  could not be encoded) and the row counts of the items before
+  as :results.
+  "
+
+  ([^Connection conn ^PreparedStatement stmt ^List params-list]
+   (mapv (fn [^Result result]
+           (.rowsProcessed result))
+         (.executeBatch conn stmt params-list)))
+
+  ([^Connection conn ^PreparedStatement stmt ^List params-list ^Map params]
+   (mapv (fn [^Result result]
+           (.rowsProcessed result))
+         (.executeBatch conn stmt params-list (->execute-params params)))))
+
+
 (defn execute
 
   ([^Connection conn ^String sql]
@@ -225,6 +366,49 @@
     (.execute conn sql (->execute-params params)))))
 
 
+(defn stream
+  "
+  Run a query and pass each row to a Flow.Subscriber
+  as soon as it arrives, with no accumulation. When the
+  subscriber has no demand, the connection stops reading
+  from the socket. Return the number of delivered rows.
+  "
+
+  (^Long [^Connection conn ^String sql ^Flow$Subscriber subscriber]
+   (.stream conn sql (->execute-params nil) subscriber))
+
+  (^Long [^Connection conn ^String sql ^Flow$Subscriber subscriber ^Map params]
+   (.stream conn sql (->execute-params params) subscriber)))
+
+
+(defn cursor
+  "
+  Open a server-side cursor in the current transaction.
+  The result can be reduced row by row (reduce, into,
+  transduce) or iterated by pages of :row-count rows
+  (1000 by default). Close it with `close-cursor`.
+  "
+
+  (^Cursor [^Connection conn ^String sql]
+   (.cursor conn sql))
+
+  (^Cursor [^Connection conn ^String sql ^Map params]
+   (.cursor conn sql (->execute-params params))))
+
+
+(defn close-cursor [^Cursor cursor]
+  (.close cursor))
+
+
+(defmacro with-cursor
+  [[bind conn sql params] & body]
+  `(let [~bind (cursor ~conn ~sql ~(or params {}))]
+     (try
+       ~@body
+       (finally
+         (close-cursor ~bind)))))
+
+
 (defmacro with-statement
   [[bind conn sql oids] & body]
 
@@ -290,9 +474,111 @@
 
 
 (defn copy-out
-  [^Connection conn ^String sql ^OutputStream out]
-  (.copyOut conn sql out))
+  "
+  Run COPY ... TO STDOUT writing the data into an output stream
+  or a writable channel. For a channel, e.g. a FileChannel, the
+  data goes right from the socket buffer in large batches. The
+  destination is not closed.
+  "
+  [^Connection conn ^String sql out]
+  (if (instance? WritableByteChannel out)
+    (.copyOut conn sql ^WritableByteChannel out)
+    (.copyOut conn sql ^OutputStream out)))
+
 
+(defn copy-out-rows
+  "
+  Run COPY ... TO STDOUT in the binary, text or CSV format
+  parsing the data into rows on the fly. CSV is taken when
+  the options after STDOUT mention it. The delimiter, quote,
+  null and other layout options must stay default, and no
+  header. COPY has no column names or types, so the names
+  are given; the :oids param types the columns in order
+  (bytea or text by default). The :reducer param works as
+  in query.
+  "
+  ([^Connection conn ^String sql names]
+   (Results->clj
+    (.copyOutRows conn sql names)))
+
+  ([^Connection conn ^String sql names ^Map params]
+   (Results->clj
+    (.copyOutRows conn sql names (->execute-params params)))))
+
+
+(defn copy-in
+  "
+  Run COPY ... FROM STDIN streaming the data from an input
+  stream or a readable channel in large chunks. On a failure
+  of the source, the COPY is rolled back and the exception
+  is rethrown as the cause. The source is not closed.
+  "
+  [^Connection conn ^String sql in]
+  (if (instance? ReadableByteChannel in)
+    (.copyIn conn sql ^ReadableByteChannel in)
+    (.copyIn conn sql ^InputStream in)))
+
+
+(defn copy-in-rows
+  "
+  Run COPY ... FROM STDIN WITH (FORMAT BINARY) encoding the rows
+  (vectors of values) with the binary encoders. The oids are
+  the types of the columns in order, e.g. [OID/INT8 OID/TEXT];
+  each one is required.
+  "
+  [^Connection conn ^String sql rows oids]
+  (.copyInRows conn sql rows oids))
+
+
+(defn copy-in-maps
+  "
+  Like copy-in-rows but for maps: the keys select the values
+  of each map in the column order; a missing key is NULL.
+  "
+  [^Connection conn ^String sql maps keys oids]
+  (.copyInMaps conn sql maps keys oids))
+
+
+
+(defn- Report->clj [^CopyLoader$Report report]
+  {:rows (.rows report)
+   :bytes (.bytes report)
+   :connections (.connections report)
+   :seconds (.seconds report)
+   :rows-per-second (.rowsPerSecond report)
+   :bytes-per-second (.bytesPerSecond report)})
+
+
+(defn copy-load-rows
+  "
+  Load rows (vectors of values) with binary COPY ... FROM STDIN
+  over n new connections at once, e.g. into a partitioned table.
+  Each connection runs in a transaction; they are all committed
+  when every COPY succeeds and rolled back otherwise. Returns
+  the number of rows, the data bytes sent (the rows in binary)
+  and the throughput.
+  "
+  ([config ^String sql rows oids n]
+   (Report->clj
+    (.loadRows (new CopyLoader (->config config) n) sql rows oids)))
+
+  ([config ^String sql rows oids n batch-size]
+   (Report->clj
+    (.loadRows (new CopyLoader (->config config) n) sql rows oids batch-size))))
+
+
+(defn copy-load-file
+  "
+  Like copy-load-rows but for a file split into n ranges on line
+  boundaries, e.g. CSV with no header and no newlines in values.
+  "
+  [config ^String sql path n]
+  (Report->clj
+   (.loadFile (new CopyLoader (->config config) n)
+              sql
+              (if (instance? Path path)
+                path
+                (.toPath (new File (str path)))))))
 
 
 (defmacro with-safe [& body]
@@ -1,7 +1,20 @@
 (ns pg.client.client-test
   (:import
-   com.github.igrishaev.PGError)
+   com.github.igrishaev.PGError
+   com.github.igrishaev.Interval
+   com.github.igrishaev.enums.OID
+   java.time.Instant
+   java.time.LocalDate
+   java.time.LocalDateTime
+   java.time.LocalTime
+   java.time.OffsetDateTime
+   java.time.OffsetTime
+   com.github.igrishaev.reducer.Columnar
+   com.github.igrishaev.reducer.Matrix
+   java.util.concurrent.Flow$Subscriber
+   java.util.concurrent.Flow$Subscription)
   (:require
+   [clojure.java.io :as io]
    [clojure.string :as str]
    [pg.client :as pg]
    [clojure.test :refer [deftest is use-fixtures testing]]))
@@ -456,6 +469,14 @@
         (is (= "Clojure" param))))))
 
 
+(deftest test-client-encoding-startup
+  (doseq [encoding ["WIN1252" "WIN1251" "SQL_ASCII"]]
+    (pg/with-connection [conn (assoc *CONFIG* :pg-params {"client_encoding" encoding})]
+      (is (= encoding (pg/get-parameter conn "client_encoding")))
+      (is (= [{:s "abc"}]
+             (pg/execute conn "select $1::text as s" {:params ["abc"]}))))))
+
+
 ;; TODO:
 (deftest test-terminate-closed
   (pg/with-connection [conn *CONFIG*]
@@ -695,6 +716,843 @@
       (is (pg/prepared-statement? res)))))
 
 
+(deftest test-client-execute-batch
+  (pg/with-connection [conn *CONFIG*]
+
+    (let [table
+          (gen-table)
+
+          query1
+          (format "create temp table %s (id integer, title text)" table)
+
+          _
+          (pg/execute conn query1)
+
+          query2
+          (format "insert into %s (id, title) values ($1, $2)" table)
+
+          params-list
+          (for [id (range 1 1001)]
+            [id (format "title%s" id)])
+
+          res2
+          (pg/with-statement [stmt conn query2]
+            (pg/execute-batch conn stmt params-list))
+
+          res3
+          (pg/query conn (format "select count(*) as total from %s" table))]
+
+      (is (= 1000 (count res2)))
+      (is (every? #{1} res2))
+      (is (= [{:total 1000}] res3)))))
+
+
+(deftest test-client-params-encode
+  (doseq [binary? [true false]]
+    (pg/with-connection [conn (assoc *CONFIG* :binary-encode? binary?)]
+      (pg/with-statement [stmt conn "select $1::int8 as a, $2::int4 as b, $3::text as c, $4::bool as d, $5::date as e, $6::float8 as f"]
+        (let [rows
+              [[1 2 "aaa" true (LocalDate/parse "2024-01-02") 1.5]
+               [-9223372036854775808 -2147483648 "привет" false (LocalDate/parse "1999-12-31") -0.25]
+               [nil nil nil nil nil nil]]]
+          (doseq [row rows]
+            (is (= [(zipmap [:a :b :c :d :e :f] row)]
+                   (pg/execute-statement conn stmt {:params row})))))))))
+
+
+(deftest test-client-execute-batch-error
+  (pg/with-connection [conn *CONFIG*]
+
+    (let [table
+          (gen-table)
+
+          query1
+          (format "create temp table %s (id integer primary key)" table)
+
+          _
+          (pg/execute conn query1)
+
+          query2
+          (format "insert into %s (id) values ($1)" table)]
+
+      (pg/with-statement [stmt conn query2]
+        (try
+          (pg/execute-batch conn stmt [[1] [2] [2] [3]])
+          (is false)
+          (catch PGError e
+            (is (str/starts-with? (ex-message e) "batch item 2 of 4 failed"))
+            (let [{:keys [index error results] total :count} (ex-data e)]
+              (is (= 2 index))
+              (is (= 4 total))
+              (is (= "23505" (:code error)))
+              (is (= [1 1] results))))))
+
+      (is (= [{:total 0}]
+             (pg/query conn (format "select count(*) as total from %s" table))))
+      (is (pg/idle? conn)))))
+
+
+(deftest test-client-execute-batch-encode-error
+  (pg/with-connection [conn *CONFIG*]
+
+    (let [table
+          (gen-table)
+
+          _
+          (pg/execute conn (format "create temp table %s (id bigint)" table))
+
+          params-list
+          (for [i (range 1000)]
+            [(if (= i 700) "oops" i)])]
+
+      (pg/begin conn)
+      (pg/execute conn (format "insert into %s (id) values (-1)" table))
+
+      (pg/with-statement [stmt conn (format "insert into %s (id) values ($1)" table)]
+        (try
+          (pg/execute-batch conn stmt params-list)
+          (is false)
+          (catch PGError e
+            (is (= "could not encode batch item 700" (ex-message e)))
+            (is (= 700 (-> e ex-data :index)))
+            (is (some? (ex-cause e))))))
+
+      ;; The connection is alive; the transaction is aborted.
+      (is (pg/tx-error? conn))
+      (pg/rollback conn)
+      (is (= [{:total 0}]
+             (pg/query conn (format "select count(*) as total from %s" table)))))))
+
+
+(deftest test-client-statement-cache
+  (pg/with-connection [conn (assoc *CONFIG* :statement-cache-size 2)]
+
+    (is (= {:hits 0 :misses 0 :size 0}
+           (pg/statement-cache-stats conn)))
+
+    (dotimes [_ 3]
+      (is (= [{:foo 1}] (pg/execute conn "select 1 as foo"))))
+
+    (is (= {:hits 2 :misses 1 :size 1}
+           (pg/statement-cache-stats conn)))
+
+    (pg/execute conn "select 2 as foo")
+    (pg/execute conn "select 3 as foo")
+
+    (is (= {:hits 2 :misses 3 :size 2}
+           (pg/statement-cache-stats conn)))
+
+    (is (= [{:foo 1}] (pg/execute conn "select 1 as foo")))
+
+    (is (= {:hits 2 :misses 4 :size 2}
+           (pg/statement-cache-stats conn)))))
+
+
+(deftest test-client-statement-cache-invalidate
+  (pg/with-connection [conn (assoc *CONFIG* :statement-cache-size 8)]
+
+    (let [table
+          (gen-table)
+
+          query
+          (format "select * from %s" table)]
+
+      (pg/execute conn (format "create temp table %s (id integer)" table))
+      (pg/execute conn (format "insert into %s values (1)" table))
+
+      (is (= [{:id 1}] (pg/execute conn query)))
+
+      (pg/execute conn (format "alter table %s add column title text" table))
+
+      (is (= [{:id 1 :title nil}] (pg/execute conn query))))))
+
+
+(deftest test-client-dedup-strings
+  (pg/with-connection [conn *CONFIG*]
+
+    (let [query
+          "select (array['aaa', 'bbb'])[1 + x % 2] as s from generate_series(1, 1000) as x"
+
+          rows
+          (pg/execute conn query {:dedup-strings? true})
+
+          {:keys [hits misses]}
+          (pg/string-cache-stats conn)]
+
+      (is (= 1000 (count rows)))
+      (is (= "bbb" (-> rows first :s)))
+      (is (identical? (-> rows (get 0) :s)
+                      (-> rows (get 2) :s)))
+      (is (= 998 hits))
+      (is (= 2 misses)))
+
+    (let [rows
+          (pg/execute conn "select 'aaa' as s from generate_series(1, 2)")]
+      (is (= "aaa" (-> rows (get 0) :s)))
+      (is (not (identical? (-> rows (get 0) :s)
+                           (-> rows (get 1) :s))))
+      (is (= {:hits 998 :misses 2}
+             (pg/string-cache-stats conn))))))
+
+
+(deftest test-client-cursor-reduce
+  (pg/with-connection [conn *CONFIG*]
+
+    (pg/with-tx [conn]
+
+      (pg/with-cursor [cur conn "select x from generate_series(1, 2500) as x" {:row-count 100}]
+        (is (= (reduce + (range 1 2501))
+               (transduce (map :x) + 0 cur))))
+
+      (pg/with-cursor [cur conn "select x from generate_series(1, 2500) as x"]
+        (is (= [{:x 1} {:x 2} {:x 3}]
+               (into [] (take 3) cur)))))))
+
+
+(deftest test-client-cursor-pages
+  (pg/with-connection [conn *CONFIG*]
+
+    (pg/with-tx [conn]
+
+      (pg/with-cursor [cur conn "select x from generate_series(1, 5) as x" {:row-count 2}]
+        (is (= [[{:x 1} {:x 2}]
+                [{:x 3} {:x 4}]
+                [{:x 5}]]
+               (vec (iterator-seq cur))))))))
+
+
+(deftest test-client-stream-subscriber
+  (pg/with-connection [conn *CONFIG*]
+
+    (let [rows
+          (atom [])
+
+          events
+          (atom [])
+
+          subscription
+          (atom nil)
+
+          subscriber
+          (reify Flow$Subscriber
+            (onSubscribe [_ s]
+              (reset! subscription s)
+              (.request ^Flow$Subscription s 1))
+            (onNext [_ row]
+              (swap! rows conj row)
+              (.request ^Flow$Subscription @subscription 1))
+            (onError [_ e]
+              (swap! events conj e))
+            (onComplete [_]
+              (swap! events conj :complete)))
+
+          total
+          (pg/stream conn "select x from generate_series(1, 5) as x" subscriber)]
+
+      (is (= 5 total))
+      (is (= [{:x 1} {:x 2} {:x 3} {:x 4} {:x 5}] @rows))
+      (is (= [:complete] @events)))))
+
+
+(deftest test-client-stream-cancel
+  (pg/with-connection [conn *CONFIG*]
+
+    (let [rows
+          (atom [])
+
+          events
+          (atom [])
+
+          subscription
+          (atom nil)
+
+          subscriber
+          (reify Flow$Subscriber
+            (onSubscribe [_ s]
+              (reset! subscription s)
+              (.request ^Flow$Subscription s 10))
+            (onNext [_ row]
+              (swap! rows conj row)
+              (when (= 2 (count @rows))
+                (.cancel ^Flow$Subscription @subscription)))
+            (onError [_ e]
+              (swap! events conj e))
+            (onComplete [_]
+              (swap! events conj :complete)))
+
+          total
+          (pg/stream conn "select x from generate_series(1, 100000) as x" subscriber)]
+
+      (is (= 2 total))
+      (is (= [{:x 1} {:x 2}] @rows))
+      (is (= [] @events))
+      (is (= [{:one 1}] (pg/query conn "select 1 as one"))))))
+
+
+(deftest test-client-stream-subscriber-fails
+  (pg/with-connection [conn *CONFIG*]
+
+    (let [rows
+          (atom [])
+
+          events
+          (atom [])
+
+          subscriber
+          (reify Flow$Subscriber
+            (onSubscribe [_ s]
+              (.request ^Flow$Subscription s Long/MAX_VALUE))
+            (onNext [_ row]
+              (swap! rows conj row)
+              (when (= 3 (count @rows))
+                (throw (ex-info "boom" {}))))
+            (onError [_ e]
+              (swap! events conj (ex-message e)))
+            (onComplete [_]
+              (swap! events conj :complete)))]
+
+      (try
+        (pg/stream conn "select x from generate_series(1, 100000) as x" subscriber)
+        (is false)
+        (catch PGError e
+          (is (= "the stream subscriber has failed" (ex-message e)))
+          (is (= "boom" (-> e ex-cause ex-message)))))
+
+      (is (= 3 (count @rows)))
+      (is (= ["boom"] @events))
+      (is (= [{:one 1}] (pg/query conn "select 1 as one"))))))
+
+
+(deftest test-client-stream-bad-request
+  (pg/with-connection [conn *CONFIG*]
+
+    (let [rows
+          (atom [])
+
+          events
+          (atom [])
+
+          subscription
+          (atom nil)
+
+          subscriber
+          (reify Flow$Subscriber
+            (onSubscribe [_ s]
+              (reset! subscription s)
+              (.request ^Flow$Subscription s 10))
+            (onNext [_ row]
+              (swap! rows conj row)
+              (when (= 2 (count @rows))
+                ;; from another thread, while onNext is running
+                @(future (.request ^Flow$Subscription @subscription 0))))
+            (onError [_ e]
+              (swap! events conj [(class e) (Thread/currentThread)]))
+            (onComplete [_]
+              (swap! events conj :complete)))]
+
+      (try
+        (pg/stream conn "select x from generate_series(1, 100000) as x" subscriber)
+        (is false)
+        (catch PGError e
+          (is (= "the stream subscriber has failed" (ex-message e)))
+          (is (instance? IllegalArgumentException (ex-cause e)))))
+
+      (is (= 2 (count @rows)))
+      (is (= [[IllegalArgumentException (Thread/currentThread)]] @events))
+      (is (= [{:one 1}] (pg/query conn "select 1 as one"))))))
+
+
+(deftest test-client-lazy-rows
+  (pg/with-connection [conn *CONFIG*]
+
+    (let [[row :as rows]
+          (pg/execute conn
+                      "select $1::integer as a, 'x' as b, null as c"
+                      {:params [42] :lazy-rows? true})]
+
+      (is (= [{:a 42 :b "x" :c nil}] rows))
+      (is (= 42 (:a row)))
+      (is (= "x" (nth row 1)))
+      (is (contains? row :c))
+      (is (= {:a 42 :b "x" :c nil :d 1} (assoc row :d 1))))
+
+    (pg/with-tx [conn]
+      (pg/with-cursor [cur conn "select x from generate_series(1, 3) as x" {:lazy-rows? true}]
+        (is (= [1 2 3] (into [] (map :x) cur)))))
+
+    (testing "with-meta makes a regular map"
+      (let [[row] (pg/execute conn "select 1 as a" {:lazy-rows? true})]
+        (is (= {:m 1} (meta (with-meta row {:m 1}))))))
+
+    (testing "reducers that don't make maps get regular rows"
+      (is (= [[1 "x"] [2 "x"]]
+             (pg/execute conn
+                         "select x, 'x' as b from generate_series(1, 2) as x"
+                         {:lazy-rows? true :reducer (new Matrix)}))))
+
+    (testing "a row is decoded with the settings of its result"
+      (let [query
+            "select '2024-01-01 12:00:00+00'::timestamptz as t"
+
+            [eager]
+            (pg/execute conn query)
+
+            [lazy]
+            (pg/execute conn query {:lazy-rows? true})]
+        (pg/execute conn "set time zone 'Asia/Tokyo'")
+        (is (= (:t eager) (:t lazy)))))))
+
+
+;; Columns of primitives with a null bitmap in the metadata.
+(deftest test-client-columnar
+  (doseq [binary? [false true]]
+    (pg/with-connection [conn (assoc *CONFIG* :binary-decode? binary?)]
+
+      (let [query
+            "select x::int8 as a, x::int4 as b, x::float8 / 2 as c, x % 2 = 0 as d, case when x = 2 then null else x::text end as e
+             from generate_series(1, 3) as x"
+
+            res
+            (pg/execute conn query {:reducer (new Columnar)})]
+
+        (is (= [1 2 3] (vec (:a res))))
+        (is (= [1 2 3] (vec (:b res))))
+        (is (= [0.5 1.0 1.5] (vec (:c res))))
+        (is (= [false true false] (vec (:d res))))
+        (is (= ["1" nil "3"] (vec (:e res))))
+        (is (= "[J" (.getName (class (:a res)))))
+        (is (= "[I" (.getName (class (:b res)))))
+        (is (= "[D" (.getName (class (:c res)))))
+        (is (= "[Z" (.getName (class (:d res)))))
+        (is (= {:count 3 :nulls {}} (meta res)))))))
+
+
+(deftest test-client-columnar-nulls
+  (pg/with-connection [conn *CONFIG*]
+    (let [res
+          (pg/execute conn
+                      "select nullif(x, 2) as x from generate_series(1, 3) as x"
+                      {:reducer (new Columnar)})]
+      (is (= [1 0 3] (vec (:x res))))
+      (is (= [1] (-> res meta :nulls :x .stream .toArray vec))))))
+
+
+(deftest test-client-columnar-custom-decoder
+  (pg/with-connection [conn *CONFIG*]
+    (pg/register-decoder conn OID/INT4 :txt
+                         (fn [^java.nio.ByteBuffer buf]
+                           (let [n (Integer/parseInt (String. (.array buf)
+                                                              (+ (.arrayOffset buf) (.position buf))
+                                                              (.remaining buf)
+                                                              "UTF-8"))]
+                             (if (= n 70) :seventy n))))
+    (let [res
+          (pg/execute conn
+                      "select nullif(x, 2) as x from generate_series(1, 100) as x"
+                      {:reducer (new Columnar)})]
+      (is (= "[Ljava.lang.Object;" (.getName (class (:x res)))))
+      (is (= [1 nil 3] (take 3 (:x res))))
+      (is (= :seventy (nth (:x res) 69)))
+      (is (= 100 (last (:x res))))
+      (is (= {:count 100 :nulls {}} (meta res))))
+    (is (= [{:one 1}] (pg/execute conn "select 1 as one")))))
+
+
+
+(deftest test-client-columnar-custom-decoder-binary
+  (pg/with-connection [conn (assoc *CONFIG* :binary-decode? true)]
+    (pg/register-decoder conn OID/INT8 :bin
+                         (fn [^java.nio.ByteBuffer buf]
+                           (let [n (.getLong buf)]
+                             (if (= n 70) :seventy (* n 10)))))
+    (pg/register-decoder conn OID/BOOL :bin
+                         (fn [^java.nio.ByteBuffer buf]
+                           (not (zero? (.get buf)))))
+    (let [res
+          (pg/execute conn
+                      "select x::int8 as x, x % 2 = 0 as y from generate_series(1, 100) as x"
+                      {:reducer (new Columnar)})]
+      (is (= "[Ljava.lang.Object;" (.getName (class (:x res)))))
+      (is (= [10 20 30] (take 3 (:x res))))
+      (is (= :seventy (nth (:x res) 69)))
+      (is (= 1000 (last (:x res))))
+      (is (= "[Z" (.getName (class (:y res)))))
+      (is (= [false true false] (take 3 (:y res))))
+      (is (= {:count 100 :nulls {}} (meta res))))))
+
+(deftest test-client-numeric-binary
+  (pg/with-connection [conn (assoc *CONFIG*
+                                   :binary-encode? true
+                                   :binary-decode? true)]
+
+    (doseq [value [0M 1M -1M 0.00M 12345.6789M -0.0001M 100000000M
+                   123456789012345678901234567890.123456789M]]
+      (is (= [{:x value}]
+             (pg/execute conn "select $1::numeric as x" {:params [value]}))))
+
+    (is (= [{:x 42M}]
+           (pg/execute conn "select $1::numeric as x" {:params [42N]})))
+
+    (is (= [{:x 42M}]
+           (pg/execute conn "select $1::numeric as x" {:params [(biginteger 42)]})))
+
+    (let [[{:keys [a b c]}]
+          (pg/execute conn "select 'NaN'::numeric as a, 'Infinity'::numeric as b, '-Infinity'::numeric as c")]
+      (is (Double/isNaN a))
+      (is (= Double/POSITIVE_INFINITY b))
+      (is (= Double/NEGATIVE_INFINITY c)))))
+
+
+(deftest test-client-encode-into-message
+  (pg/with-connection [conn (assoc *CONFIG* :binary-encode? true)]
+    (doseq [[value type expected]
+            [[42 "numeric" 42M]
+             [-12345678901234 "numeric" -12345678901234M]
+             [(bigint 7) "int2" 7]
+             [123456789012345678901234567890N "numeric" 123456789012345678901234567890M]
+             [(LocalTime/parse "12:00:01.000001") "time" (LocalTime/parse "12:00:01.000001")]
+             [(OffsetTime/parse "12:00+03:00") "timetz" (OffsetTime/parse "12:00+03:00")]
+             [(java.time.Duration/ofMillis 1500) "interval" (new Interval 0 0 1500000)]
+             [["a" nil "é"] "text[]" ["a" nil "é"]]
+             [[[1.5M 2M] [3M nil]] "numeric[]" [[1.5M 2M] [3M nil]]]]]
+      (is (= [{:x expected}]
+             (pg/execute conn (format "select $1::%s as x" type) {:params [value]})))))
+
+  (pg/with-connection [conn *CONFIG*]
+    (doseq [value [0.0000001M -12.345M 0.00M 1E+5M 123456789012345678901234567890.5M]]
+      (is (= [{:x value}]
+             (pg/execute conn "select $1::numeric as x" {:params [value]}))))
+    (let [uid (random-uuid)]
+      (is (= [{:x uid :s (str uid)}]
+             (pg/execute conn "select $1::uuid as x, $2::text as s" {:params [uid uid]}))))))
+
+
+(def DATETIME_QUERY
+  "select
+     '2023-01-02'::date as date,
+     '03:04:05.123456'::time as time,
+     '03:04:05+03'::timetz as timetz,
+     '2023-01-02 03:04:05.123456'::timestamp as timestamp,
+     '2023-01-02 03:04:05.123456+00'::timestamptz as timestamptz,
+     '1 year 2 mons -3 days 04:05:06'::interval as interval,
+     'infinity'::date as inf")
+
+
+(deftest test-client-binary-mixed-formats
+  (pg/with-connection [conn (assoc *CONFIG* :binary-decode? true)]
+
+    ;; point has no binary decoder and comes as text
+    (is (= [{:a 1 :p "(1,2)" :t "ab" :n 1.5M}]
+           (pg/execute conn "select 1 as a, '(1,2)'::point as p, 'ab'::text as t, 1.5::numeric as n")))
+
+    (pg/register-decoder conn OID/INT4 :txt (fn [_] :custom))
+
+    (is (= [{:a :custom :b 2}]
+           (pg/execute conn "select 1::int4 as a, 2::int8 as b")))))
+
+
+(deftest test-client-datetime
+  (doseq [binary? [false true]
+          date-style ["ISO, MDY" "SQL, DMY" "Postgres, MDY" "German, DMY"]]
+    (pg/with-connection [conn (assoc *CONFIG* :binary-decode? binary?)]
+
+      (pg/execute conn (format "set DateStyle to '%s'" date-style))
+      (pg/execute conn "set TimeZone to 'UTC'")
+
+      (let [[row] (pg/execute conn DATETIME_QUERY)]
+        (testing date-style
+          (is (= {:date (LocalDate/parse "2023-01-02")
+                  :time (LocalTime/parse "03:04:05.123456")
+                  :timetz (OffsetTime/parse "03:04:05+03:00")
+                  :timestamp (LocalDateTime/parse "2023-01-02T03:04:05.123456")
+                  :timestamptz (OffsetDateTime/parse "2023-01-02T03:04:05.123456Z")
+                  :interval (new Interval 14 -3 14706000000)
+                  :inf LocalDate/MAX}
+                 row)))))))
+
+
+(deftest test-client-datetime-unknown-zone
+  (pg/with-connection [conn *CONFIG*]
+
+    (pg/execute conn "set TimeZone to 'EST5EDT,M3.2.0,M11.1.0'")
+
+    ;; ISO values carry their offset
+    (is (= [{:ts (OffsetDateTime/parse "2023-01-02T03:04:05-05:00")}]
+           (pg/query conn "select '2023-01-02 03:04:05-05'::timestamptz as ts")))
+
+    (pg/execute conn "set DateStyle to 'SQL, MDY'")
+    (try
+      (pg/query conn "select '2023-01-02 03:04:05-05'::timestamptz as ts")
+      (is false)
+      (catch PGError e
+        (is (str/starts-with? (ex-message e) "unknown TimeZone: EST5EDT,M3.2.0,M11.1.0"))))))
+
+
+(deftest test-client-datetime-encode
+  (doseq [binary? [false true]]
+    (pg/with-connection [conn (assoc *CONFIG*
+                                     :binary-encode? binary?
+                                     :binary-decode? binary?)]
+      (let [ts (OffsetDateTime/parse "2023-01-02T03:04:05.123456Z")
+            [row] (pg/execute conn
+                              "select $1::timestamptz as ts, $2::date as d, $3::interval as i"
+                              {:params [ts
+                                        (LocalDate/parse "2023-01-02")
+                                        (java.time.Duration/ofMillis 1500)]})]
+        (is (= ts (.withOffsetSameInstant ^OffsetDateTime (:ts row) java.time.ZoneOffset/UTC)))
+        (is (= (LocalDate/parse "2023-01-02") (:d row)))
+        (is (= (new Interval 0 0 1500000) (:i row)))))))
+
+
+(deftest test-client-datetime-encode-infinity
+  (doseq [binary? [false true]]
+    (pg/with-connection [conn (assoc *CONFIG*
+                                     :binary-encode? binary?
+                                     :binary-decode? binary?)]
+      (let [params [LocalDate/MAX LocalDate/MIN
+                    LocalDateTime/MAX LocalDateTime/MIN
+                    OffsetDateTime/MAX OffsetDateTime/MIN]
+            [row] (pg/execute conn
+                              (str "select $1::date as a, $2::date as b, "
+                                   "$3::timestamp as c, $4::timestamp as d, "
+                                   "$5::timestamptz as e, $6::timestamptz as f, "
+                                   "$1::date::text as g, $6::timestamptz::text as h")
+                              {:params params})]
+        (is (= (zipmap [:a :b :c :d :e :f] params)
+               (dissoc row :g :h)))
+        (is (= "infinity" (:g row)))
+        (is (= "-infinity" (:h row)))))))
+
+
+
+;; Beyond a long of microseconds, not a silent overflow.
+(deftest test-client-datetime-encode-out-of-range
+  (pg/with-connection [conn (assoc *CONFIG* :binary-encode? true)]
+    (doseq [[value type] [[(.plusSeconds LocalDateTime/MIN 1) "timestamp"]
+                          [(.minusSeconds Instant/MAX 1) "timestamptz"]
+                          [(.minusDays LocalDate/MAX 1) "date"]]]
+      (try
+        (pg/execute conn (str "select $1::" type " as x") {:params [value]})
+        (is false)
+        (catch PGError e
+          (is (str/includes? (ex-message e) "out of range"))
+          (is (str/includes? (ex-message e) (str value))))))
+    (is (= [{:one 1}] (pg/query conn "select 1 as one")))))
+
+(deftest test-client-datetime-encode-sql
+  (doseq [binary? [false true]]
+    (pg/with-connection [conn (assoc *CONFIG*
+                                     :binary-encode? binary?
+                                     :binary-decode? binary?)]
+      (let [[row] (pg/execute conn
+                              "select $1::date as d, $2::time as t"
+                              {:params [(java.sql.Date/valueOf "2023-01-02")
+                                        (java.sql.Time/valueOf "03:04:05")]})]
+        (is (= {:d (LocalDate/parse "2023-01-02")
+                :t (LocalTime/parse "03:04:05")}
+               row))))))
+
+
+(deftest test-client-text-scalars
+  (pg/with-connection [conn *CONFIG*]
+    (let [uid (random-uuid)
+          [row] (pg/execute conn
+                            (str "select -32768::int2 as a, -2147483648::int4 as b, "
+                                 "9223372036854775807::int8 as c, 1.5::float8 as d, "
+                                 "0.1::float4 as e, 'NaN'::float8 as f, 1e300::float8 as g, "
+                                 "$1::uuid as h, true as i, false as j")
+                            {:params [uid]})]
+      (is (= {:a -32768 :b -2147483648 :c 9223372036854775807
+              :d 1.5 :e (float 0.1) :g 1e300 :h uid :i true :j false}
+             (dissoc row :f)))
+      (is (Double/isNaN (:f row))))))
+
+
+(deftest test-client-decoder-plan
+  (doseq [binary? [false true]]
+    (pg/with-connection [conn (assoc *CONFIG* :binary-decode? binary?)]
+
+      (is (= [{:id 1 :n 2 :x 1.5 :s "a" :b true :u nil}]
+             (pg/execute conn "select 1::int8 as id, 2::int4 as n, 1.5::float8 as x, 'a'::text as s, true as b, null::text as u")))
+
+      (pg/register-decoder conn OID/TEXT (if binary? :bin :txt)
+                           (fn [^java.nio.ByteBuffer buf]
+                             (str/upper-case (String. (.array buf)
+                                                      (+ (.arrayOffset buf) (.position buf))
+                                                      (.remaining buf)
+                                                      "UTF-8"))))
+
+      (is (= [{:s "ABC" :n 1}]
+             (pg/execute conn "select 'abc'::text as s, 1 as n")))
+
+      (is (= [{:s "ABC"}]
+             (pg/execute conn "select 'abc'::text as s" {:lazy-rows? true}))))))
+
+
+(deftest test-client-custom-types
+  (doseq [binary? [false true]]
+    (let [catalog (pg/type-catalog)
+          config (assoc *CONFIG*
+                        :binary-encode? binary?
+                        :binary-decode? binary?
+                        :type-catalog catalog)
+          suffix (System/nanoTime)
+          mood (str "mood_" suffix)
+          posint (str "posint_" suffix)
+          pair (str "pair_" suffix)]
+
+      (pg/with-connection [conn config]
+
+        (pg/query conn (format "create type %s as enum ('sad', 'ok', 'happy')" mood))
+        (pg/query conn (format "create domain %s as int4 check (value > 0)" posint))
+        (pg/query conn (format "create type %s as (a int4, b text)" pair))
+
+        (let [[{:keys [m ms n p]}]
+              (pg/execute conn
+                          (format "select $1::%s as m, array['sad', 'ok']::%s[] as ms, $2::%s as n, '(1,foo)'::%s as p"
+                                  mood mood posint pair)
+                          {:params [:happy 42]})]
+          (is (= "happy" m))
+          (is (= 42 n))
+          (if binary?
+            (do
+              (is (= ["sad" "ok"] ms))
+              (is (bytes? p)))
+            (do
+              (is (= "{sad,ok}" ms))
+              (is (= "(1,foo)" p)))))
+
+        (is (pos? (.size catalog)))
+
+        (doseq [fmt [:txt :bin]]
+          (pg/register-decoder conn mood fmt
+                               (fn [^java.nio.ByteBuffer buf]
+                                 (keyword (String. (.array buf)
+                                                   (+ (.arrayOffset buf) (.position buf))
+                                                   (.remaining buf)
+                                                   "UTF-8")))))
+
+        (is (= [{:m :ok}]
+               (pg/execute conn (format "select 'ok'::%s as m" mood)))))
+
+      ;; the catalog is shared, no need to load it again
+      (pg/with-connection [conn config]
+        (is (= [{:m :sad}]
+               (pg/query conn (format "select 'sad'::%s as m" mood))))
+        (pg/query conn (format "drop type %s; drop domain %s; drop type %s" pair posint mood))))))
+
+
+
+(deftest test-client-custom-type-encoder
+  (doseq [binary? [false true]]
+    (let [suffix (System/nanoTime)
+          pair (str "pair_" suffix)
+          posint (str "posint_" suffix)
+          query (format "select ($1::%s).b as b, $2::%s as n" pair posint)]
+
+      (pg/with-connection [conn (assoc *CONFIG*
+                                       :binary-encode? binary?
+                                       :type-catalog (pg/type-catalog))]
+
+        (pg/query conn (format "create type %s as (a int4, b text)" pair))
+        (pg/query conn (format "create domain %s as int4 check (value > 0)" posint))
+
+        ;; a vector goes as its toString
+        (try
+          (pg/execute conn query {:params [[1 "foo"] 1]})
+          (is false)
+          (catch PGError e
+            (is (str/includes? (ex-message e) "malformed record literal"))))
+
+        ;; the statement might be cached, the encoders apply anyway
+        (pg/register-encoder conn pair
+                             (fn [[a b]]
+                               (format "(%s,\"%s\")" a b)))
+        (pg/register-encoder conn posint
+                             (fn [n]
+                               (str (* n 10))))
+
+        (is (= [{:b "foo, bar" :n 10}]
+               (pg/execute conn query {:params [[1 "foo, bar"] 1]})))
+
+        (pg/register-encoder conn pair (fn [_] nil))
+        (try
+          (pg/execute conn query {:params [[1 "foo"] 1]})
+          (is false)
+          (catch PGError e
+            (is (str/includes? (ex-message e) "returned null"))))
+
+        (is (= [{:one 1}] (pg/query conn "select 1 as one")))
+        (pg/query conn (format "drop type %s; drop domain %s" pair posint))))))
+
+(deftest test-client-json-params
+  (doseq [binary? [false true]]
+    (pg/with-connection [conn (assoc *CONFIG* :binary-encode? binary?)]
+
+      (let [doc {:id 1
+                 :tags ["a" "b"]
+                 :items (vec (for [i (range 2000)]
+                               {:n i :name (str "item " i)}))}]
+
+        (is (= [{:ok true :len 2000}]
+               (pg/execute conn
+                           "select $1::jsonb = $2::json::jsonb as ok, jsonb_array_length($1::jsonb -> 'items') as len"
+                           {:params [doc doc]}))))
+
+      (is (thrown? PGError
+                   (pg/execute conn "select $1::jsonb as doc" {:params [{:obj (Object.)}]})))
+
+      (is (= [{:doc {:foo 1}}]
+             (pg/execute conn "select $1::jsonb as doc" {:params [{:foo 1}]}))))))
+
+
+(deftest test-client-arrays
+  (doseq [binary? [false true]]
+    (pg/with-connection [conn (assoc *CONFIG*
+                                     :binary-encode? binary?
+                                     :binary-decode? true)]
+
+      (is (= [{:arr [1 2 3]}]
+             (pg/execute conn "select $1::int8[] as arr" {:params [[1 2 3]]})))
+
+      (is (= [{:arr [[1 2] [3 nil]]}]
+             (pg/execute conn "select $1::int4[][] as arr" {:params [[[1 2] [3 nil]]]})))
+
+      (is (= [{:arr ["a\"b" "c\\d" nil "{x,y}"]}]
+             (pg/execute conn "select $1::text[] as arr" {:params [["a\"b" "c\\d" nil "{x,y}"]]})))
+
+      (is (= [{:arr []}]
+             (pg/execute conn "select $1::text[] as arr" {:params [[]]})))
+
+      (let [ids (long-array (range 10000))]
+        (is (= [{:count 10000}]
+               (pg/execute conn
+                           "select count(*) as count from generate_series(0, 20000) as x where x = any($1)"
+                           {:params [ids]})))))))
+
+
+(deftest test-client-arrays-primitive
+  (pg/with-connection [conn (assoc *CONFIG*
+                                   :binary-decode? true
+                                   :primitive-arrays? true)]
+    (let [[{:keys [a b c d]}]
+          (pg/execute conn "select '{1,2}'::int4[] as a, '{1,2}'::int8[] as b, '{1.5}'::float8[] as c, '{1,null}'::int8[] as d")]
+      (is (= [1 2] (vec ^ints a)))
+      (is (= [1 2] (vec ^longs b)))
+      (is (= [1.5] (vec ^doubles c)))
+      (is (= [1 nil] d)))))
+
+
+(deftest test-client-cursor-no-tx
+  (pg/with-connection [conn *CONFIG*]
+    (try
+      (pg/cursor conn "select 1")
+      (is false)
+      (catch PGError e
+        (is (= "a cursor can be opened only in a transaction"
+               (ex-message e)))))))
+
+
 ;; --------------
 
 
@@ -712,6 +1570,263 @@
                  (ex-data e))))))))
 
 
+(deftest test-client-copy-in
+  (pg/with-connection [conn *CONFIG*]
+
+    (let [table
+          (gen-table)
+
+          _
+          (pg/execute conn (format "create temp table %s (id integer, title text)" table))
+
+          csv
+          (with-out-str
+            (doseq [i (range 1 100001)]
+              (println (format "%s,title %s" i i))))
+
+          sql
+          (format "copy %s (id, title) from stdin with (format csv)" table)
+
+          results
+          (pg/copy-in conn sql (-> csv (.getBytes "UTF-8") io/input-stream))]
+
+      (is (= "COPY 100000" (-> results first .tag)))
+      (is (= [{:total 100000 :max 100000}]
+             (pg/query conn (format "select count(*) as total, max(id) as max from %s" table))))
+
+      (testing "the source fails"
+        (let [in (proxy [java.io.InputStream] []
+                   (read
+                     ([] (throw (java.io.IOException. "boom")))
+                     ([_ _ _] (throw (java.io.IOException. "boom")))))]
+          (try
+            (pg/copy-in conn sql in)
+            (is false)
+            (catch PGError e
+              (is (= "could not read the COPY source" (ex-message e)))
+              (is (= "boom" (-> e ex-cause ex-message)))))))
+
+      (testing "the server fails"
+        (try
+          (pg/copy-in conn sql (io/input-stream (.getBytes "1,aaa\nbad,bbb\n" "UTF-8")))
+          (is false)
+          (catch PGError e
+            (is (str/includes? (ex-message e) "invalid input syntax")))))
+
+      (testing "a channel"
+        (let [ch (java.nio.channels.Channels/newChannel
+                  (io/input-stream (.getBytes "100001,last\n" "UTF-8")))]
+          (pg/copy-in conn sql ch)))
+
+      (is (pg/idle? conn))
+      (is (= [{:total 100001}]
+             (pg/query conn (format "select count(*) as total from %s" table)))))))
+
+
+(deftest test-client-copy-in-rows
+  (pg/with-connection [conn *CONFIG*]
+
+    (let [table
+          (gen-table)
+
+          _
+          (pg/execute conn (format "create temp table %s (id bigint, title text, created date)" table))
+
+          sql
+          (format "copy %s (id, title, created) from stdin with (format binary)" table)
+
+          date
+          (LocalDate/parse "2024-01-01")
+
+          results
+          (pg/copy-in-rows conn sql
+                           (for [i (range 1 10001)]
+                             [i (when (odd? i) (str "title " i)) date])
+                           [OID/INT8 OID/TEXT OID/DATE])]
+
+      (is (= "COPY 10000" (-> results first .tag)))
+
+      (pg/copy-in-maps conn sql
+                       [{:id 10001 :title "last" :created date}
+                        {:id 10002}]
+                       [:id :title :created]
+                       [OID/INT8 OID/TEXT OID/DATE])
+
+      (is (= [{:id 1 :title "title 1" :created date}
+              {:id 2 :title nil :created date}
+              {:id 10001 :title "last" :created date}
+              {:id 10002 :title nil :created nil}]
+             (pg/query conn (format "select * from %s where id in (1, 2, 10001, 10002) order by id" table))))
+
+      (try
+        (pg/copy-in-rows conn sql [[1 "a" date] ["oops" "b" date]] [OID/INT8 OID/TEXT OID/DATE])
+        (is false)
+        (catch PGError e
+          (is (= "could not encode the COPY rows" (ex-message e)))))
+
+      (is (pg/idle? conn))
+      (is (= [{:total 10002}]
+             (pg/query conn (format "select count(*) as total from %s" table)))))))
+
+
+(deftest test-client-copy-load
+  (let [table
+        (gen-table)
+
+        sql-bin
+        (format "copy %s (id, title) from stdin with (format binary)" table)
+
+        sql-csv
+        (format "copy %s (id, title) from stdin with (format csv)" table)
+
+        file
+        (java.io.File/createTempFile "load" ".csv")]
+
+    (pg/with-connection [conn *CONFIG*]
+      (pg/execute conn (format "create table %s (id bigint primary key, title text)" table)))
+
+    (try
+
+      (let [report
+            (pg/copy-load-rows *CONFIG*
+                               sql-bin
+                               (for [i (range 1 100001)]
+                                 [i (str "title " i)])
+                               [OID/INT8 OID/TEXT]
+                               4)]
+        (is (= 100000 (:rows report)))
+        (is (= 4 (:connections report)))
+        (is (pos? (:bytes report)))
+        (is (pos? (:rows-per-second report)))
+        (is (pos? (:bytes-per-second report))))
+
+      (spit file (str/join (for [i (range 100001 150001)]
+                             (format "%s,title %s\n" i i))))
+
+      (let [report
+            (pg/copy-load-file *CONFIG* sql-csv file 3)]
+        (is (= 50000 (:rows report)))
+        (is (= (.length file) (:bytes report))))
+
+      (testing "a failure rolls back every share"
+        (try
+          (pg/copy-load-rows *CONFIG*
+                             sql-bin
+                             (for [i (range 150001 160001)]
+                               [(if (= i 159000) 1 i) "dup"])
+                             [OID/INT8 OID/TEXT]
+                             4
+                             100)
+          (is false)
+          (catch PGError e
+            (is (= "could not load the COPY data" (ex-message e))))))
+
+      (pg/with-connection [conn *CONFIG*]
+        (is (= [{:total 150000 :max 150000}]
+               (pg/query conn (format "select count(*) as total, max(id) as max from %s" table)))))
+
+      (finally
+        (.delete file)
+        (pg/with-connection [conn *CONFIG*]
+          (pg/execute conn (format "drop table %s" table)))))))
+
+
+(deftest test-client-copy-out-channel
+  (pg/with-connection [conn *CONFIG*]
+
+    (let [sql
+          "copy (select x, 'title ' || x from generate_series(1, 100000) as x) to stdout with (format csv)"
+
+          file
+          (java.io.File/createTempFile "copy" ".csv")
+
+          out
+          (java.io.ByteArrayOutputStream.)
+
+          results
+          (with-open [ch (java.nio.channels.FileChannel/open
+                          (.toPath file)
+                          (into-array java.nio.file.OpenOption
+                                      [java.nio.file.StandardOpenOption/WRITE]))]
+            (pg/copy-out conn sql ch))]
+
+      (pg/copy-out conn sql out)
+
+      (is (= "COPY 100000" (-> results first .tag)))
+      (is (= (str out) (slurp file)))
+
+      (testing "the channel fails"
+        (let [ch (reify java.nio.channels.WritableByteChannel
+                   (write [_ _] (throw (java.io.IOException. "boom")))
+                   (isOpen [_] true)
+                   (close [_]))]
+          (try
+            (pg/copy-out conn sql ch)
+            (is false)
+            (catch PGError e
+              (is (= "could not write the COPY data" (ex-message e)))
+              (is (= "boom" (-> e ex-cause ex-message)))))))
+
+      (is (pg/idle? conn))
+      (.delete file))))
+
+
+(deftest test-client-copy-out-rows
+  (pg/with-connection [conn *CONFIG*]
+
+    (let [query
+          "copy (select x, 'title ' || x, x % 2 = 0 from generate_series(1, 10000) as x) to stdout with (format %s)"
+
+          oids
+          [OID/INT4 OID/TEXT OID/BOOL]
+
+          rows-bin
+          (pg/copy-out-rows conn (format query "binary") ["id" "title" "even"] {:oids oids})
+
+          rows-csv
+          (pg/copy-out-rows conn (format query "csv") ["id" "title" "even"] {:oids oids})
+
+          rows-txt
+          (pg/copy-out-rows conn (format query "text") ["id" "title" "even"] {:oids oids})]
+
+      (is (= 10000 (count rows-bin)))
+      (is (= rows-bin rows-csv))
+      (is (= rows-bin rows-txt))
+      (is (= [{:id 1 :title "title 1" :even false}
+              {:id 2 :title "title 2" :even true}]
+             (take 2 rows-bin)))
+
+      (is (= [{:a nil :b "x,\"y\"\nz" :c ""}]
+             (pg/copy-out-rows conn
+                               "copy (select null, 'x,\"y\"\nz', '') to stdout with (format csv)"
+                               ["a" "b" "c"])))
+
+      (is (= [{:a nil :b "x\t\"y\"\nz \\ w" :c ""}]
+             (pg/copy-out-rows conn
+                               "copy (select null, E'x\\t\"y\"\\nz \\\\ w', '') to stdout"
+                               ["a" "b" "c"])))
+
+      (try
+        (pg/copy-out-rows conn (format query "csv") ["id" "title"])
+        (is false)
+        (catch PGError e
+          (is (= "could not parse the COPY data" (ex-message e)))))
+
+      (try
+        (pg/copy-out-rows conn "copy (select 1) to stdout with (format csv, header)" ["a"])
+        (is false)
+        (catch PGError e
+          (is (re-find #"default layout only, got the header option" (ex-message e)))))
+
+      (try
+        (pg/copy-out-rows conn (format query "text") ["id" "title" "even"] {:oids [OID/INT4]})
+        (is false)
+        (catch PGError e
+          (is (re-find #"COPY has 3 name\(s\) but 1 OID\(s\) given" (ex-message e)))))
+
+      (is (pg/idle? conn)))))
+
+
 ;; (deftest test-statement-params-nil
 ;;   (pg/with-connection [conn *CONFIG*]
 ;;     (pg/with-statement [stmt conn "select 42 as answer"]